@@ -0,0 +1,75 @@
+package com.snu.project.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+// Assignment 4 WatermarkEmbedder / WatermarkExtractor on a BMPUtil, with the
+// "##@@##" markers and the CRC-16 jump its console Main uses
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Ass4Benchmark {
+
+    private static final String MARKER = "##@@##";
+
+    @Param({"128128", "200300", "256256"})
+    public String imageSet;
+
+    @Param({"4", "16", "48"})
+    public int payloadLength;
+
+    private Object bmp;
+    private Object watermarkedBmp;
+    private String fullWatermark;
+    private int jump;
+
+    @Setup
+    public void setup() throws Throwable {
+        BufferedImage image = BenchImages.load(imageSet);
+        String path = BenchImages.writeTempBmp(image).getPath();
+        bmp = Engines.ASS4_OPEN.invokeExact(path);
+        watermarkedBmp = Engines.ASS4_OPEN.invokeExact(path);
+
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(BenchImages.PASSWORD.getBytes(StandardCharsets.UTF_8));
+        byte[] hex = HexFormat.of().formatHex(hash).getBytes(StandardCharsets.UTF_8);
+        jump = (int) Engines.ASS4_CRC.invokeExact(hex);
+        if (jump == 0) {
+            throw new IllegalStateException("Benchmark password gives a zero jump");
+        }
+
+        fullWatermark = MARKER + BenchImages.payload(payloadLength) + MARKER;
+        boolean fits = (boolean) Engines.ASS4_EMBED.invokeExact(watermarkedBmp, fullWatermark, jump);
+        String check = (String) Engines.ASS4_EXTRACT.invokeExact(watermarkedBmp, jump);
+        if (!fits || !fullWatermark.equals(check)) {
+            throw new IllegalStateException("Assignment 4 round trip failed: " + check);
+        }
+    }
+
+    @Benchmark
+    public boolean embed() throws Throwable {
+        return (boolean) Engines.ASS4_EMBED.invokeExact(bmp, fullWatermark, jump);
+    }
+
+    @Benchmark
+    public String extract() throws Throwable {
+        return (String) Engines.ASS4_EXTRACT.invokeExact(watermarkedBmp, jump);
+    }
+}
@@ -0,0 +1,106 @@
+package com.snu.project.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// AudioWatermarkEngine (The_Proof, the AudioWatermark scheme) through the NibbleCodec
+// for each sample format, on ten seconds of random 48 kHz stereo. embed and extract
+// touch only the few dozen frames on the hop path; decodeAll reads every frame, which
+// is what separates the formats.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioCodecBenchmark {
+
+    private static final int CHANNELS = 2;
+    private static final int FRAMES = 48_000 * 10;
+    private static final String TIMESTAMP = "12/00/00/01/01/2025";
+
+    // WavFile.WAVE_FORMAT_PCM and WAVE_FORMAT_IEEE_FLOAT
+    private static final int PCM = 1;
+    private static final int IEEE_FLOAT = 3;
+
+    @Param({"pcm8", "pcm16", "pcm24", "pcm32", "float32"})
+    public String format;
+
+    // AudioWatermark accepts watermarks of up to 16 characters
+    @Param({"4", "16"})
+    public int payloadLength;
+
+    private Object engine;
+    private Object codec;
+    private Object watermarkedCodec;
+    private String payload;
+
+    @Setup
+    public void setup() throws Throwable {
+        engine = Engines.AUDIO_NEW.invokeExact();
+        payload = BenchImages.payload(payloadLength);
+
+        codec = codec(samples());
+        watermarkedCodec = codec(samples());
+        Engines.AUDIO_EMBED.invokeExact(engine, watermarkedCodec, FRAMES, payload, TIMESTAMP, 0);
+        String check = (String) Engines.AUDIO_EXTRACT.invokeExact(engine, watermarkedCodec, FRAMES, payload, 0);
+        if (!(payload + TIMESTAMP + "#@").equals(check)) {
+            throw new IllegalStateException("AudioWatermarkEngine round trip failed for " + format + ": " + check);
+        }
+    }
+
+    // Re-embedding into the same samples writes identical nibbles, so every call does the same work
+    @Benchmark
+    public Object embed() throws Throwable {
+        Engines.AUDIO_EMBED.invokeExact(engine, codec, FRAMES, payload, TIMESTAMP, 0);
+        return codec;
+    }
+
+    @Benchmark
+    public String extract() throws Throwable {
+        return (String) Engines.AUDIO_EXTRACT.invokeExact(engine, watermarkedCodec, FRAMES, payload, 0);
+    }
+
+    @Benchmark
+    public int decodeAll() throws Throwable {
+        int sum = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            sum += (int) Engines.NIBBLE_DECODE.invokeExact(watermarkedCodec, frame);
+        }
+        return sum;
+    }
+
+    private Object codec(ByteBuffer samples) throws Throwable {
+        return switch (format) {
+            case "pcm8" -> Engines.NIBBLE_OF.invokeExact(samples, CHANNELS, PCM, 8, 8);
+            case "pcm16" -> Engines.NIBBLE_OF.invokeExact(samples, CHANNELS, PCM, 16, 16);
+            case "pcm24" -> Engines.NIBBLE_OF.invokeExact(samples, CHANNELS, PCM, 24, 24);
+            case "pcm32" -> Engines.NIBBLE_OF.invokeExact(samples, CHANNELS, PCM, 32, 32);
+            case "float32" -> Engines.NIBBLE_OF.invokeExact(samples, CHANNELS, IEEE_FLOAT, 32, 32);
+            default -> throw new IllegalArgumentException("Unknown format: " + format);
+        };
+    }
+
+    // Random bytes are valid samples in every format; float32 gets NaNs and infinities too,
+    // which the codec does not care about
+    private ByteBuffer samples() {
+        int bytesPerSample = Integer.parseInt(format.replaceAll("\\D", "")) / 8;
+        byte[] data = new byte[FRAMES * CHANNELS * bytesPerSample];
+        new Random(42).nextBytes(data);
+        return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,71 @@
+package com.snu.project.bench;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Test images from the repository's Assests folder. Each image set (128128,
+// 200300, 256256) is a folder of same-sized pictures; the first one ImageIO can
+// decode, in file name order, is used and converted to TYPE_3BYTE_BGR, the
+// layout ImageIO gives for a 24-bit BMP.
+//
+// The folder is resolved from -Dbench.assets, defaulting to ../../Assests (the
+// repository root seen from this module).
+final class BenchImages {
+
+    static final String PASSWORD = "benchmark-password";
+
+    private BenchImages() {
+    }
+
+    static BufferedImage load(String imageSet) throws IOException {
+        Path dir = Paths.get(System.getProperty("bench.assets", "../../Assests"), imageSet);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(Files::isRegularFile).sorted().toList();
+        }
+
+        for (Path file : files) {
+            BufferedImage image = ImageIO.read(file.toFile());
+            if (image != null) {
+                return toBgr(image);
+            }
+        }
+        throw new IOException("No readable image in " + dir.toAbsolutePath());
+    }
+
+    static BufferedImage copy(BufferedImage image) {
+        return toBgr(image);
+    }
+
+    // Write the image as a BMP temp file, for engines that only open files
+    static File writeTempBmp(BufferedImage image) throws IOException {
+        File file = File.createTempFile("bench", ".bmp");
+        file.deleteOnExit();
+        if (!ImageIO.write(image, "bmp", file)) {
+            throw new IOException("No BMP writer for image type " + image.getType());
+        }
+        return file;
+    }
+
+    // Printable ASCII payload of the given length
+    static String payload(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('A' + i % 26));
+        }
+        return sb.toString();
+    }
+
+    private static BufferedImage toBgr(BufferedImage image) {
+        BufferedImage bgr = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        bgr.getGraphics().drawImage(image, 0, 0, null);
+        return bgr;
+    }
+}
@@ -0,0 +1,85 @@
+package com.snu.project.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// DWM2Engine (The_Proof): '*' + watermark + '#' + timestamp + "#@" on the MD5 X/Y hop path,
+// with no trace listener attached
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Dwm2Benchmark {
+
+    // Same format as DWM2.getCurrentTimestamp(), fixed so every run embeds the same string
+    private static final String TIMESTAMP = "12/10/30/18/10/2026";
+
+    @Param({"128128", "200300", "256256"})
+    public String imageSet;
+
+    // DWM2 accepts watermarks of up to 16 characters
+    @Param({"4", "8", "16"})
+    public int payloadLength;
+
+    private Object engine;
+    private Object key;
+    private BufferedImage image;
+    private Object raster;
+    private Object watermarkedRaster;
+    private String payload;
+    private int markerX;
+    private int markerY;
+    private int markerRgb;
+
+    @Setup
+    public void setup() throws Throwable {
+        engine = Engines.DWM2_NEW.invokeExact();
+        key = Engines.DWM2_KEY.invokeExact(BenchImages.PASSWORD);
+        payload = BenchImages.payload(payloadLength);
+
+        image = BenchImages.load(imageSet);
+        raster = Engines.RASTER_OF.invokeExact(image);
+
+        int markerPixel = (int) Engines.KEY_BASE_OFFSET.invokeExact(key) % (image.getWidth() * image.getHeight());
+        markerX = markerPixel % image.getWidth();
+        markerY = markerPixel / image.getWidth();
+        markerRgb = image.getRGB(markerX, markerY);
+
+        BufferedImage watermarked = BenchImages.copy(image);
+        watermarkedRaster = Engines.RASTER_OF.invokeExact(watermarked);
+        Engines.DWM2_EMBED.invokeExact(engine, watermarkedRaster, payload, TIMESTAMP, key);
+        String check = (String) Engines.DWM2_EXTRACT.invokeExact(engine, watermarkedRaster, key);
+        String expected = "*" + payload + "#" + TIMESTAMP + "#@";
+        if (!expected.equals(check)) {
+            throw new IllegalStateException("DWM2Engine round trip failed: " + check);
+        }
+    }
+
+    // DWM2 refuses to embed twice with one password, so the '*' marker pixel is put back
+    // after each call; that single setRGB is part of the measured time
+    @Benchmark
+    public BufferedImage embed() throws Throwable {
+        Engines.DWM2_EMBED.invokeExact(engine, raster, payload, TIMESTAMP, key);
+        image.setRGB(markerX, markerY, markerRgb);
+        return image;
+    }
+
+    @Benchmark
+    public String extract() throws Throwable {
+        return (String) Engines.DWM2_EXTRACT.invokeExact(engine, watermarkedRaster, key);
+    }
+}
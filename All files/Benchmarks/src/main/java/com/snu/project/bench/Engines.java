@@ -0,0 +1,247 @@
+package com.snu.project.bench;
+
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+import static java.lang.invoke.MethodType.methodType;
+
+// The engines live in the default package of their IntelliJ modules, which a named
+// package cannot import, and JMH refuses benchmarks in the default package. Each
+// entry point is bound once here to a static final MethodHandle, which the JIT
+// treats as a constant and inlines like a direct call.
+final class Engines {
+
+    // StegoUtils.embedWatermark(BufferedImage image, String watermark, String password)
+    static final MethodHandle STEGO_EMBED = findStatic("StegoUtils", "embedWatermark",
+            methodType(BufferedImage.class, BufferedImage.class, String.class, String.class));
+
+    // StegoUtils.extractWatermark(BufferedImage image, String password)
+    static final MethodHandle STEGO_EXTRACT = findStatic("StegoUtils", "extractWatermark",
+            methodType(String.class, BufferedImage.class, String.class));
+
+    // new BMPUtil(String path), typed as Object
+    static final MethodHandle ASS4_OPEN = findConstructor("BMPUtil", methodType(void.class, String.class))
+            .asType(methodType(Object.class, String.class));
+
+    // WatermarkEmbedder.embedWatermark(BMPUtil bmp, String watermark, int jump)
+    static final MethodHandle ASS4_EMBED = findStatic("WatermarkEmbedder", "embedWatermark",
+            methodType(boolean.class, type("BMPUtil"), String.class, int.class))
+            .asType(methodType(boolean.class, Object.class, String.class, int.class));
+
+    // WatermarkExtractor.extractWatermark(BMPUtil bmp, int jump)
+    static final MethodHandle ASS4_EXTRACT = findStatic("WatermarkExtractor", "extractWatermark",
+            methodType(String.class, type("BMPUtil"), int.class))
+            .asType(methodType(String.class, Object.class, int.class));
+
+    // CRCUtil.computeCRCDecimal(byte[] data)
+    static final MethodHandle ASS4_CRC = findStatic("CRCUtil", "computeCRCDecimal",
+            methodType(int.class, byte[].class));
+
+    // LSBEncoder.encodeText(BufferedImage image, String text)
+    static final MethodHandle LSB_ENCODE = findStatic("LSBEncoder", "encodeText",
+            methodType(BufferedImage.class, BufferedImage.class, String.class));
+
+    // PixelRaster.of(BufferedImage image), typed as Object
+    static final MethodHandle RASTER_OF = findStatic("PixelRaster", "of",
+            methodType(type("PixelRaster"), BufferedImage.class))
+            .asType(methodType(Object.class, BufferedImage.class));
+
+    // KeySchedule.forDwm2(String password), typed as Object
+    static final MethodHandle DWM2_KEY = findStatic("KeySchedule", "forDwm2",
+            methodType(type("KeySchedule"), String.class))
+            .asType(methodType(Object.class, String.class));
+
+    // KeySchedule.getBaseOffset()
+    static final MethodHandle KEY_BASE_OFFSET = findVirtual("KeySchedule", "getBaseOffset",
+            methodType(int.class))
+            .asType(methodType(int.class, Object.class));
+
+    // new DWM2Engine(), typed as Object
+    static final MethodHandle DWM2_NEW = findConstructor("DWM2Engine", methodType(void.class))
+            .asType(methodType(Object.class));
+
+    // DWM2Engine.embed(PixelRaster raster, String watermark, String timestamp, KeySchedule key)
+    static final MethodHandle DWM2_EMBED = findVirtual("DWM2Engine", "embed",
+            methodType(void.class, type("PixelRaster"), String.class, String.class, type("KeySchedule")))
+            .asType(methodType(void.class, Object.class, Object.class, String.class, String.class, Object.class));
+
+    // DWM2Engine.extract(PixelRaster raster, KeySchedule key)
+    static final MethodHandle DWM2_EXTRACT = findVirtual("DWM2Engine", "extract",
+            methodType(String.class, type("PixelRaster"), type("KeySchedule")))
+            .asType(methodType(String.class, Object.class, Object.class, Object.class));
+
+    // KeySchedule.forSequentialXor(String password), typed as Object
+    static final MethodHandle XOR_KEY = findStatic("KeySchedule", "forSequentialXor",
+            methodType(type("KeySchedule"), String.class))
+            .asType(methodType(Object.class, String.class));
+
+    // new XorStepEngine(), typed as Object
+    static final MethodHandle XOR_NEW = findConstructor("XorStepEngine", methodType(void.class))
+            .asType(methodType(Object.class));
+
+    // XorStepEngine.embed(PixelRaster raster, String watermark, KeySchedule key)
+    static final MethodHandle XOR_EMBED = findVirtual("XorStepEngine", "embed",
+            methodType(void.class, type("PixelRaster"), String.class, type("KeySchedule")))
+            .asType(methodType(void.class, Object.class, Object.class, String.class, Object.class));
+
+    // XorStepEngine.extract(PixelRaster raster, KeySchedule key)
+    static final MethodHandle XOR_EXTRACT = findVirtual("XorStepEngine", "extract",
+            methodType(String.class, type("PixelRaster"), type("KeySchedule")))
+            .asType(methodType(String.class, Object.class, Object.class, Object.class));
+
+    // NibbleCodec.of(ByteBuffer data, int channels, int formatTag, int bitsPerSample, int validBitsPerSample),
+    // typed as Object
+    static final MethodHandle NIBBLE_OF = findStatic("NibbleCodec", "of",
+            methodType(type("NibbleCodec"), ByteBuffer.class, int.class, int.class, int.class, int.class))
+            .asType(methodType(Object.class, ByteBuffer.class, int.class, int.class, int.class, int.class));
+
+    // NibbleCodec.decode(int frame)
+    static final MethodHandle NIBBLE_DECODE = findVirtual("NibbleCodec", "decode",
+            methodType(int.class, int.class))
+            .asType(methodType(int.class, Object.class, int.class));
+
+    // new AudioWatermarkEngine(), typed as Object
+    static final MethodHandle AUDIO_NEW = findConstructor("AudioWatermarkEngine", methodType(void.class))
+            .asType(methodType(Object.class));
+
+    // AudioWatermarkEngine.embed(NibbleCodec codec, int totalFrames, String watermark, String timestamp,
+    //                            int baseOffset)
+    static final MethodHandle AUDIO_EMBED = findVirtual("AudioWatermarkEngine", "embed",
+            methodType(void.class, type("NibbleCodec"), int.class, String.class, String.class, int.class))
+            .asType(methodType(void.class, Object.class, Object.class, int.class, String.class, String.class,
+                    int.class));
+
+    // AudioWatermarkEngine.extract(NibbleCodec codec, int totalFrames, String expectedWatermark, int baseOffset)
+    static final MethodHandle AUDIO_EXTRACT = findVirtual("AudioWatermarkEngine", "extract",
+            methodType(String.class, type("NibbleCodec"), int.class, String.class, int.class))
+            .asType(methodType(String.class, Object.class, Object.class, int.class, String.class, int.class));
+
+    // SampleFormat.of(int channels, int formatTag, int bitsPerSample, int validBitsPerSample), typed as Object
+    static final MethodHandle SAMPLE_FORMAT_OF = findStatic("SampleFormat", "of",
+            methodType(type("SampleFormat"), int.class, int.class, int.class, int.class))
+            .asType(methodType(Object.class, int.class, int.class, int.class, int.class));
+
+    // new SpreadSpectrumEngine(long key), typed as Object
+    static final MethodHandle SPREAD_NEW = findConstructor("SpreadSpectrumEngine",
+            methodType(void.class, long.class))
+            .asType(methodType(Object.class, long.class));
+
+    // SpreadSpectrumEngine.embed(ReadableByteChannel in, WritableByteChannel out, long dataSize,
+    //                            SampleFormat format, int sampleRate, String payload, LongConsumer progress)
+    static final MethodHandle SPREAD_EMBED = findVirtual("SpreadSpectrumEngine", "embed",
+            methodType(void.class, ReadableByteChannel.class, WritableByteChannel.class, long.class,
+                    type("SampleFormat"), int.class, String.class, LongConsumer.class))
+            .asType(methodType(void.class, Object.class, ReadableByteChannel.class, WritableByteChannel.class,
+                    long.class, Object.class, int.class, String.class, LongConsumer.class));
+
+    // SpreadSpectrumEngine.detect(ReadableByteChannel in, long dataSize, SampleFormat format, int sampleRate,
+    //                             LongConsumer progress), typed as Object
+    static final MethodHandle SPREAD_DETECT = findVirtual("SpreadSpectrumEngine", "detect",
+            methodType(type("SpreadSpectrumEngine$Detection"), ReadableByteChannel.class, long.class,
+                    type("SampleFormat"), int.class, LongConsumer.class))
+            .asType(methodType(Object.class, Object.class, ReadableByteChannel.class, long.class, Object.class,
+                    int.class, LongConsumer.class));
+
+    // SpreadSpectrumEngine.Detection.isDetected()
+    static final MethodHandle SPREAD_DETECTED = findVirtual("SpreadSpectrumEngine$Detection", "isDetected",
+            methodType(boolean.class))
+            .asType(methodType(boolean.class, Object.class));
+
+    // WavFile.open(Path path), typed as Object
+    static final MethodHandle WAV_OPEN = findStatic("WavFile", "open", methodType(type("WavFile"), Path.class))
+            .asType(methodType(Object.class, Path.class));
+
+    // new SpreadSpectrumVerifier(long key, int segmentPeriods, ForkJoinPool pool), typed as Object
+    static final MethodHandle VERIFIER_NEW = findConstructor("SpreadSpectrumVerifier",
+            methodType(void.class, long.class, int.class, ForkJoinPool.class))
+            .asType(methodType(Object.class, long.class, int.class, ForkJoinPool.class));
+
+    // SpreadSpectrumVerifier.verify(WavFile wav, String expectedPayload, IntConsumer progress), typed as Object
+    static final MethodHandle VERIFIER_VERIFY = findVirtual("SpreadSpectrumVerifier", "verify",
+            methodType(type("SpreadSpectrumVerifier$Report"), type("WavFile"), String.class, IntConsumer.class))
+            .asType(methodType(Object.class, Object.class, Object.class, String.class, IntConsumer.class));
+
+    // SpreadSpectrumVerifier.Report.isIntact()
+    static final MethodHandle REPORT_INTACT = findVirtual("SpreadSpectrumVerifier$Report", "isIntact",
+            methodType(boolean.class))
+            .asType(methodType(boolean.class, Object.class));
+
+    // new LiveWatermarker(int channels, int formatTag, int bitsPerSample, int validBitsPerSample,
+    //                     String watermark, String timestamp, int totalFrames, int blockFrames), typed as Object
+    static final MethodHandle LIVE_NEW = findConstructor("LiveWatermarker",
+            methodType(void.class, int.class, int.class, int.class, int.class, String.class, String.class, int.class,
+                    int.class))
+            .asType(methodType(Object.class, int.class, int.class, int.class, int.class, String.class, String.class,
+                    int.class, int.class));
+
+    // LiveWatermarker.stream(ReadableByteChannel in, long dataSize, AudioSink sink, LongConsumer progress)
+    static final MethodHandle LIVE_STREAM = findVirtual("LiveWatermarker", "stream",
+            methodType(void.class, ReadableByteChannel.class, long.class, type("AudioSink"), LongConsumer.class))
+            .asType(methodType(void.class, Object.class, ReadableByteChannel.class, long.class, Object.class,
+                    LongConsumer.class));
+
+    // new TimingSink(int sampleRate, int blockAlign), typed as Object
+    static final MethodHandle TIMING_SINK_NEW = findConstructor("TimingSink",
+            methodType(void.class, int.class, int.class))
+            .asType(methodType(Object.class, int.class, int.class));
+
+    // TimingSink.getUnderruns()
+    static final MethodHandle TIMING_SINK_UNDERRUNS = findVirtual("TimingSink", "getUnderruns",
+            methodType(int.class))
+            .asType(methodType(int.class, Object.class));
+
+    // PixelDiff.compare(BufferedImage original, BufferedImage watermarked, ForkJoinPool pool, int bandRows),
+    // typed as Object
+    static final MethodHandle PIXEL_DIFF_COMPARE = findStatic("PixelDiff", "compare",
+            methodType(type("PixelDiff"), BufferedImage.class, BufferedImage.class, ForkJoinPool.class, int.class))
+            .asType(methodType(Object.class, BufferedImage.class, BufferedImage.class, ForkJoinPool.class, int.class));
+
+    // PixelDiff.getChangedPixels()
+    static final MethodHandle PIXEL_DIFF_CHANGED = findVirtual("PixelDiff", "getChangedPixels",
+            methodType(int.class))
+            .asType(methodType(int.class, Object.class));
+
+    private Engines() {
+    }
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Engine class not on the classpath: " + name, e);
+        }
+    }
+
+    static MethodHandle findStatic(String owner, String name, MethodType type) {
+        try {
+            return MethodHandles.publicLookup().findStatic(type(owner), name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Engine method not found: " + owner + "." + name + type, e);
+        }
+    }
+
+    static MethodHandle findVirtual(String owner, String name, MethodType type) {
+        try {
+            return MethodHandles.publicLookup().findVirtual(type(owner), name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Engine method not found: " + owner + "." + name + type, e);
+        }
+    }
+
+    static MethodHandle findConstructor(String owner, MethodType type) {
+        try {
+            return MethodHandles.publicLookup().findConstructor(type(owner), type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Engine constructor not found: " + owner + type, e);
+        }
+    }
+}
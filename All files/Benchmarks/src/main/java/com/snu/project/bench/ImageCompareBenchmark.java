@@ -0,0 +1,80 @@
+package com.snu.project.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// PixelDiff (Pixel_Compare) diffing a 12-megapixel TYPE_3BYTE_BGR image against
+// a copy with the low bits of about half its pixels changed, as an LSB
+// watermark leaves it, on a ForkJoinPool of the given parallelism. One thread
+// is the serial baseline; the others should scale with the cores available.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageCompareBenchmark {
+
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+
+    // PixelDiff.DEFAULT_BAND_ROWS
+    private static final int BAND_ROWS = 64;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private ForkJoinPool pool;
+    private BufferedImage original;
+    private BufferedImage watermarked;
+
+    @Setup
+    public void setup() throws Throwable {
+        original = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+        watermarked = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(42);
+        int changed = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int rgb = random.nextInt();
+                int marked = random.nextBoolean() ? rgb ^ random.nextInt() & 0x070703 : rgb;
+                original.setRGB(x, y, rgb);
+                watermarked.setRGB(x, y, marked);
+                if (((rgb ^ marked) & 0xFFFFFF) != 0) {
+                    changed++;
+                }
+            }
+        }
+
+        pool = new ForkJoinPool(threads);
+        int found = (int) Engines.PIXEL_DIFF_CHANGED.invokeExact(compare());
+        if (found != changed) {
+            throw new IllegalStateException("PixelDiff found " + found + " changed pixels, expected " + changed);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Object compare() throws Throwable {
+        return Engines.PIXEL_DIFF_COMPARE.invokeExact(original, watermarked, pool, BAND_ROWS);
+    }
+}
@@ -0,0 +1,72 @@
+package com.snu.project.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+// LiveWatermarker (The_Proof) marking 10 seconds of 48 kHz stereo 16-bit PCM
+// block by block into a TimingSink, the stand-in for a sound card. One
+// operation is 10 seconds of audio, so ops/s times 10 is the real-time factor.
+// Smaller blocks cut latency (64 frames is 1.3 ms) at the price of more calls
+// per second; setup checks a stream keeps up without a single underrun.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LiveWatermarkBenchmark {
+
+    private static final int SAMPLE_RATE = 48_000;
+    private static final int CHANNELS = 2;
+    private static final int BLOCK_ALIGN = CHANNELS * 2;
+    private static final int FRAMES = SAMPLE_RATE * 10;
+    private static final String WATERMARK = "SNU-2025";
+    private static final String TIMESTAMP = "12/10/30/01/10/2025";
+    private static final LongConsumer NO_PROGRESS = _ -> {
+    };
+
+    // WavFile.WAVE_FORMAT_PCM
+    private static final int PCM = 1;
+
+    @Param({"64", "256", "4096"})
+    public int blockFrames;
+
+    private byte[] samples;
+
+    @Setup
+    public void setup() throws Throwable {
+        samples = new byte[FRAMES * BLOCK_ALIGN];
+        new Random(42).nextBytes(samples);
+
+        Object sink = stream();
+        int underruns = (int) Engines.TIMING_SINK_UNDERRUNS.invokeExact(sink);
+        if (underruns != 0) {
+            throw new IllegalStateException(underruns + " underruns with " + blockFrames + "-frame blocks");
+        }
+    }
+
+    @Benchmark
+    public Object stream() throws Throwable {
+        Object marker = Engines.LIVE_NEW.invokeExact(CHANNELS, PCM, 16, 16, WATERMARK, TIMESTAMP, FRAMES,
+                blockFrames);
+        Object sink = Engines.TIMING_SINK_NEW.invokeExact(SAMPLE_RATE, BLOCK_ALIGN);
+        Engines.LIVE_STREAM.invokeExact(marker, Channels.newChannel(new ByteArrayInputStream(samples)),
+                (long) samples.length, sink, NO_PROGRESS);
+        return sink;
+    }
+}
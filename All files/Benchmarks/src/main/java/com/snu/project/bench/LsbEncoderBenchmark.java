@@ -0,0 +1,47 @@
+package com.snu.project.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// "Java LSB" LSBEncoder.encodeText: one bit per pixel in the red channel.
+// LSBDecoder is still an empty class, so there is no extract counterpart.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LsbEncoderBenchmark {
+
+    @Param({"128128", "200300", "256256"})
+    public String imageSet;
+
+    @Param({"4", "16", "48"})
+    public int payloadLength;
+
+    private BufferedImage image;
+    private String payload;
+
+    @Setup
+    public void setup() throws Exception {
+        image = BenchImages.load(imageSet);
+        payload = BenchImages.payload(payloadLength);
+    }
+
+    @Benchmark
+    public BufferedImage encodeText() throws Throwable {
+        return (BufferedImage) Engines.LSB_ENCODE.invokeExact(image, payload);
+    }
+}
@@ -0,0 +1,121 @@
+package com.snu.project.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+// SpreadSpectrumVerifier (The_Proof) checking a 60-second, 4-channel 48 kHz
+// 16-bit WAV - two segments of up to two periods, eight cells - on a
+// ForkJoinPool of the given parallelism. The file sits in a temp file, so after
+// the first iteration it is read from the page cache.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentVerifyBenchmark {
+
+    private static final int SAMPLE_RATE = 48_000;
+    private static final int CHANNELS = 4;
+    private static final int FRAMES = SAMPLE_RATE * 60;
+    private static final long KEY = 0x5EEDL;
+    private static final String PAYLOAD = "SNU-2025";
+    private static final LongConsumer NO_PROGRESS = _ -> {
+    };
+    private static final IntConsumer NO_CELLS = _ -> {
+    };
+
+    // WavFile.WAVE_FORMAT_PCM
+    private static final int PCM = 1;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private ForkJoinPool pool;
+    private Object verifier;
+    private Object wav;
+
+    @Setup
+    public void setup() throws Throwable {
+        Object engine = Engines.SPREAD_NEW.invokeExact(KEY);
+        Object format = Engines.SAMPLE_FORMAT_OF.invokeExact(CHANNELS, PCM, 16, 16);
+        byte[] original = signal();
+        ByteArrayOutputStream marked = new ByteArrayOutputStream(44 + original.length);
+        marked.write(header(original.length));
+        Engines.SPREAD_EMBED.invokeExact(engine, Channels.newChannel(new ByteArrayInputStream(original)),
+                Channels.newChannel(marked), (long) original.length, format, SAMPLE_RATE, PAYLOAD, NO_PROGRESS);
+
+        File file = File.createTempFile("bench", ".wav");
+        file.deleteOnExit();
+        Files.write(file.toPath(), marked.toByteArray());
+
+        pool = new ForkJoinPool(threads);
+        verifier = Engines.VERIFIER_NEW.invokeExact(KEY, 2, pool);
+        wav = Engines.WAV_OPEN.invokeExact(file.toPath());
+        Object report = Engines.VERIFIER_VERIFY.invokeExact(verifier, wav, PAYLOAD, NO_CELLS);
+        if (!(boolean) Engines.REPORT_INTACT.invokeExact(report)) {
+            throw new IllegalStateException("SpreadSpectrumVerifier did not find the mark in every cell");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        ((Closeable) wav).close();
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Object verify() throws Throwable {
+        return Engines.VERIFIER_VERIFY.invokeExact(verifier, wav, PAYLOAD, NO_CELLS);
+    }
+
+    private static byte[] header(int dataSize) {
+        int blockAlign = CHANNELS * 2;
+        return ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN)
+                .put(new byte[] { 'R', 'I', 'F', 'F' }).putInt(36 + dataSize).put(new byte[] { 'W', 'A', 'V', 'E' })
+                .put(new byte[] { 'f', 'm', 't', ' ' }).putInt(16).putShort((short) PCM).putShort((short) CHANNELS)
+                .putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * blockAlign).putShort((short) blockAlign)
+                .putShort((short) 16)
+                .put(new byte[] { 'd', 'a', 't', 'a' }).putInt(dataSize)
+                .array();
+    }
+
+    // Independent filtered noise per channel, at a quarter of full scale
+    private static byte[] signal() {
+        ByteBuffer data = ByteBuffer.allocate(FRAMES * CHANNELS * 2).order(ByteOrder.LITTLE_ENDIAN);
+        Random random = new Random(42);
+        double[] low = new double[CHANNELS];
+        for (int n = 0; n < FRAMES; n++) {
+            for (int c = 0; c < CHANNELS; c++) {
+                low[c] = 0.95 * low[c] + 0.05 * random.nextGaussian();
+                double sample = Math.max(-0.5, Math.min(0.5, 0.25 * (0.6 * low[c] + 0.1 * random.nextGaussian())));
+                data.putShort((short) Math.round(sample * 32767));
+            }
+        }
+        return data.array();
+    }
+}
@@ -0,0 +1,133 @@
+package com.snu.project.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+// SpreadSpectrumEngine (The_Proof, the robust AudioWatermark mode) streaming 30
+// seconds of 48 kHz stereo - two watermark periods - between in-memory channels.
+// One operation is 30 seconds of audio, so ops/s times 30 is the real-time
+// factor on one core.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpreadSpectrumBenchmark {
+
+    private static final int SAMPLE_RATE = 48_000;
+    private static final int CHANNELS = 2;
+    private static final int FRAMES = SAMPLE_RATE * 30;
+    private static final String PAYLOAD = "SNU-2025";
+    private static final LongConsumer NO_PROGRESS = _ -> {
+    };
+
+    // WavFile.WAVE_FORMAT_PCM and WAVE_FORMAT_IEEE_FLOAT
+    private static final int PCM = 1;
+    private static final int IEEE_FLOAT = 3;
+
+    @Param({"pcm16", "pcm24", "float32"})
+    public String format;
+
+    private Object engine;
+    private Object sampleFormat;
+    private byte[] original;
+    private byte[] watermarked;
+    private final WritableByteChannel discard = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Setup
+    public void setup() throws Throwable {
+        engine = Engines.SPREAD_NEW.invokeExact(0x5EEDL);
+        sampleFormat = switch (format) {
+            case "pcm16" -> Engines.SAMPLE_FORMAT_OF.invokeExact(CHANNELS, PCM, 16, 16);
+            case "pcm24" -> Engines.SAMPLE_FORMAT_OF.invokeExact(CHANNELS, PCM, 24, 24);
+            case "float32" -> Engines.SAMPLE_FORMAT_OF.invokeExact(CHANNELS, IEEE_FLOAT, 32, 32);
+            default -> throw new IllegalArgumentException("Unknown format: " + format);
+        };
+        original = signal();
+
+        ByteArrayOutputStream marked = new ByteArrayOutputStream(original.length);
+        Engines.SPREAD_EMBED.invokeExact(engine, Channels.newChannel(new ByteArrayInputStream(original)),
+                Channels.newChannel(marked), (long) original.length, sampleFormat, SAMPLE_RATE, PAYLOAD, NO_PROGRESS);
+        watermarked = marked.toByteArray();
+        Object detection = Engines.SPREAD_DETECT.invokeExact(engine,
+                Channels.newChannel(new ByteArrayInputStream(watermarked)), (long) watermarked.length, sampleFormat,
+                SAMPLE_RATE, NO_PROGRESS);
+        if (!(boolean) Engines.SPREAD_DETECTED.invokeExact(detection)) {
+            throw new IllegalStateException("SpreadSpectrumEngine round trip failed for " + format + ": " + detection);
+        }
+    }
+
+    @Benchmark
+    public WritableByteChannel embed() throws Throwable {
+        Engines.SPREAD_EMBED.invokeExact(engine, Channels.newChannel(new ByteArrayInputStream(original)), discard,
+                (long) original.length, sampleFormat, SAMPLE_RATE, PAYLOAD, NO_PROGRESS);
+        return discard;
+    }
+
+    @Benchmark
+    public Object detect() throws Throwable {
+        return Engines.SPREAD_DETECT.invokeExact(engine, Channels.newChannel(new ByteArrayInputStream(watermarked)),
+                (long) watermarked.length, sampleFormat, SAMPLE_RATE, NO_PROGRESS);
+    }
+
+    // Filtered noise under a slow swell, so every band carries energy; written at half scale
+    private byte[] signal() {
+        int bytesPerSample = Integer.parseInt(format.replaceAll("\\D", "")) / 8;
+        ByteBuffer data = ByteBuffer.allocate(FRAMES * CHANNELS * bytesPerSample).order(ByteOrder.LITTLE_ENDIAN);
+        Random random = new Random(42);
+        double low = 0;
+        for (int n = 0; n < FRAMES; n++) {
+            low = 0.95 * low + 0.05 * random.nextGaussian();
+            double swell = 0.5 + 0.5 * Math.sin(2 * Math.PI * n / SAMPLE_RATE);
+            for (int c = 0; c < CHANNELS; c++) {
+                double sample = 0.5 * swell * (0.6 * low + 0.1 * random.nextGaussian());
+                sample = Math.max(-0.5, Math.min(0.5, sample));
+                switch (format) {
+                    case "pcm16" -> data.putShort((short) Math.round(sample * 32767));
+                    case "pcm24" -> {
+                        int value = (int) Math.round(sample * 8388607);
+                        data.put((byte) value).put((byte) (value >> 8)).put((byte) (value >> 16));
+                    }
+                    default -> data.putFloat((float) sample);
+                }
+            }
+        }
+        return data.array();
+    }
+}
@@ -0,0 +1,61 @@
+package com.snu.project.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// StegoUtils (The_Product): "@@" + payload + "#@" on the CRC-8 hop path
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StegoBenchmark {
+
+    @Param({"128128", "200300", "256256"})
+    public String imageSet;
+
+    // The longest still fits a 128x128 image at the largest possible step (256)
+    @Param({"4", "16", "48"})
+    public int payloadLength;
+
+    private BufferedImage image;
+    private BufferedImage watermarked;
+    private String payload;
+
+    @Setup
+    public void setup() throws Throwable {
+        image = BenchImages.load(imageSet);
+        payload = BenchImages.payload(payloadLength);
+
+        watermarked = BenchImages.copy(image);
+        BufferedImage _ = (BufferedImage) Engines.STEGO_EMBED.invokeExact(watermarked, payload, BenchImages.PASSWORD);
+        String check = (String) Engines.STEGO_EXTRACT.invokeExact(watermarked, BenchImages.PASSWORD);
+        if (!payload.equals(check)) {
+            throw new IllegalStateException("StegoUtils round trip failed: " + check);
+        }
+    }
+
+    // Re-embedding into the same image writes identical pixels, so every call does the same work
+    @Benchmark
+    public BufferedImage embed() throws Throwable {
+        return (BufferedImage) Engines.STEGO_EMBED.invokeExact(image, payload, BenchImages.PASSWORD);
+    }
+
+    @Benchmark
+    public String extract() throws Throwable {
+        return (String) Engines.STEGO_EXTRACT.invokeExact(watermarked, BenchImages.PASSWORD);
+    }
+}
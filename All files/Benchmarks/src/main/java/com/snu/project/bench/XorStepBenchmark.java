@@ -0,0 +1,70 @@
+package com.snu.project.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// XorStepEngine (The_Proof, the DigitalWatermarkingGUI scheme): "@@" + payload + "#@"
+// every step pixels from pixel step, with no trace sink attached
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XorStepBenchmark {
+
+    @Param({"128128", "200300", "256256"})
+    public String imageSet;
+
+    // DigitalWatermarkingGUI accepts watermarks of up to 50 characters
+    @Param({"4", "16", "48"})
+    public int payloadLength;
+
+    private Object engine;
+    private Object key;
+    private BufferedImage image;
+    private Object raster;
+    private Object watermarkedRaster;
+    private String payload;
+
+    @Setup
+    public void setup() throws Throwable {
+        engine = Engines.XOR_NEW.invokeExact();
+        key = Engines.XOR_KEY.invokeExact(BenchImages.PASSWORD);
+        payload = BenchImages.payload(payloadLength);
+
+        image = BenchImages.load(imageSet);
+        raster = Engines.RASTER_OF.invokeExact(image);
+
+        watermarkedRaster = Engines.RASTER_OF.invokeExact(BenchImages.copy(image));
+        Engines.XOR_EMBED.invokeExact(engine, watermarkedRaster, payload, key);
+        String check = (String) Engines.XOR_EXTRACT.invokeExact(engine, watermarkedRaster, key);
+        if (!("@@" + payload + "#@").equals(check)) {
+            throw new IllegalStateException("XorStepEngine round trip failed: " + check);
+        }
+    }
+
+    // Re-embedding into the same image writes identical pixels, so every call does the same work
+    @Benchmark
+    public BufferedImage embed() throws Throwable {
+        Engines.XOR_EMBED.invokeExact(engine, raster, payload, key);
+        return image;
+    }
+
+    @Benchmark
+    public String extract() throws Throwable {
+        return (String) Engines.XOR_EXTRACT.invokeExact(engine, watermarkedRaster, key);
+    }
+}
@@ -0,0 +1,133 @@
+package com.snu.project.bench;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The table-driven CRCs (The_Product's Crc8 and Crc16Ccitt, Assignment 4's
+// CRCUtil) against the published "123456789" check values and against the
+// bit-at-a-time loops they replaced. The slicing-by-4 bulk update has a separate
+// tail loop, so every length from 0 to 7 is covered as well as longer runs, each
+// at random offsets into a larger buffer.
+class ChecksumVectorsTest {
+
+    private static final byte[] CHECK = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    void crc8CheckValue() throws Exception {
+        Checksum crc = checksum("Crc8");
+        crc.update(CHECK, 0, CHECK.length);
+        assertEquals(0xF4, crc.getValue());
+    }
+
+    @Test
+    void crc16CcittCheckValue() throws Exception {
+        Checksum crc = checksum("Crc16Ccitt");
+        crc.update(CHECK, 0, CHECK.length);
+        assertEquals(0x29B1, crc.getValue());
+    }
+
+    @Test
+    void crcUtilCheckValue() throws Throwable {
+        // computeCRCDecimal folds the CRC-16 into [0, 255]
+        assertEquals(0x29B1 % 256, (int) Engines.ASS4_CRC.invokeExact(CHECK));
+    }
+
+    @Test
+    void crc8MatchesBitwise() throws Exception {
+        matchesBitwise(checksum("Crc8"), 0, ChecksumVectorsTest::bitwiseCrc8);
+    }
+
+    @Test
+    void crc16CcittMatchesBitwise() throws Exception {
+        matchesBitwise(checksum("Crc16Ccitt"), 0xFFFF, ChecksumVectorsTest::bitwiseCrc16);
+    }
+
+    @Test
+    void crcUtilMatchesBitwise() throws Throwable {
+        Random random = new Random(8);
+        for (int len = 0; len <= 64; len++) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            int expected = bitwiseCrc16(0xFFFF, data, 0, len) % 256;
+            assertEquals(expected, (int) Engines.ASS4_CRC.invokeExact(data), "length " + len);
+        }
+    }
+
+    @Test
+    void singleByteUpdatesMatchBulk() throws Exception {
+        for (String name : new String[] {"Crc8", "Crc16Ccitt"}) {
+            Checksum bulk = checksum(name);
+            Checksum single = checksum(name);
+            bulk.update(CHECK, 0, CHECK.length);
+            for (byte b : CHECK) {
+                single.update(b);
+            }
+            assertEquals(bulk.getValue(), single.getValue(), name);
+
+            bulk.reset();
+            bulk.update(CHECK, 0, CHECK.length);
+            assertEquals(single.getValue(), bulk.getValue(), name + " after reset");
+        }
+    }
+
+    // Continues one running checksum across chunks of every short length and a few
+    // long ones, each taken from a random offset, checking it after every chunk
+    private static void matchesBitwise(Checksum crc, int initial, Bitwise bitwise) {
+        Random random = new Random(8);
+        byte[] buffer = new byte[256];
+        int[] lengths = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 15, 16, 17, 63, 100, 200};
+
+        for (int round = 0; round < 50; round++) {
+            random.nextBytes(buffer);
+            crc.reset();
+            int expected = initial;
+            for (int len : lengths) {
+                int off = random.nextInt(buffer.length - len + 1);
+                crc.update(buffer, off, len);
+                expected = bitwise.update(expected, buffer, off, len);
+                assertEquals(expected, crc.getValue(), "round " + round + ", length " + len + ", offset " + off);
+            }
+        }
+    }
+
+    private static Checksum checksum(String name) throws Exception {
+        return (Checksum) Engines.type(name).getConstructor().newInstance();
+    }
+
+    private interface Bitwise {
+        int update(int crc, byte[] data, int off, int len);
+    }
+
+    // HashUtils.getCRC8 before the tables
+    private static int bitwiseCrc8(int crc, byte[] data, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            crc ^= data[i] & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80) != 0 ? (crc << 1) ^ 0x07 : crc << 1;
+            }
+            crc &= 0xFF;
+        }
+        return crc;
+    }
+
+    // CRCUtil.computeCRCDecimal before the table, without the final fold
+    private static int bitwiseCrc16(int crc, byte[] data, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            for (int bit = 0; bit < 8; bit++) {
+                boolean in = ((data[i] >> (7 - bit)) & 1) == 1;
+                boolean c15 = ((crc >> 15) & 1) == 1;
+                crc <<= 1;
+                if (c15 ^ in) {
+                    crc ^= 0x1021;
+                }
+            }
+            crc &= 0xFFFF;
+        }
+        return crc;
+    }
+}
@@ -1,15 +1,39 @@
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 
 public class BMPUtil {
     private BufferedImage image;
+    private int width;
+
+    // Backing arrays of TYPE_3BYTE_BGR / TYPE_INT_RGB images, null for other types
+    private byte[] bgrData;
+    private int[] rgbData;
 
     public BMPUtil(String path) throws IOException {
         this.image = ImageIO.read(new File(path));
-        if (image.getWidth() != 256 || image.getHeight() != 256) {
-            throw new IllegalArgumentException("Image must be 256x256 pixels.");
+        if (image == null) {
+            throw new IllegalArgumentException("Unsupported image file.");
+        }
+        this.width = image.getWidth();
+        bindRaster();
+    }
+
+    private void bindRaster() {
+        WritableRaster raster = image.getRaster();
+        if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+                || raster.getDataBuffer().getOffset() != 0) {
+            return;
+        }
+
+        if (image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            bgrData = ((DataBufferByte) raster.getDataBuffer()).getData();
+        } else if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            rgbData = ((DataBufferInt) raster.getDataBuffer()).getData();
         }
     }
 
@@ -18,10 +42,24 @@ public class BMPUtil {
     }
 
     public int[] getPixel(int index) {
-        int x = index % 256;
-        int y = index / 256;
-        int rgb = image.getRGB(x, y);
         int[] color = new int[3];
+
+        if (bgrData != null) {
+            int p = index * 3;
+            color[0] = bgrData[p + 2] & 0xFF; // Red
+            color[1] = bgrData[p + 1] & 0xFF; // Green
+            color[2] = bgrData[p] & 0xFF; // Blue
+            return color;
+        }
+
+        int rgb;
+        if (rgbData != null) {
+            rgb = rgbData[index];
+        } else {
+            int x = index % width;
+            int y = index / width;
+            rgb = image.getRGB(x, y);
+        }
         color[0] = (rgb >> 16) & 0xFF; // Red
         color[1] = (rgb >> 8) & 0xFF; // Green
         color[2] = rgb & 0xFF; // Blue
@@ -29,9 +67,22 @@ public class BMPUtil {
     }
 
     public void setPixel(int index, int r, int g, int b) {
-        int x = index % 256;
-        int y = index / 256;
+        if (bgrData != null) {
+            int p = index * 3;
+            bgrData[p] = (byte) b;
+            bgrData[p + 1] = (byte) g;
+            bgrData[p + 2] = (byte) r;
+            return;
+        }
+
         int rgb = (r << 16) | (g << 8) | b;
+        if (rgbData != null) {
+            rgbData[index] = rgb;
+            return;
+        }
+
+        int x = index % width;
+        int y = index / width;
         image.setRGB(x, y, rgb);
     }
 
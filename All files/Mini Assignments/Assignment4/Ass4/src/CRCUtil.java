@@ -2,21 +2,27 @@ public class CRCUtil {
 
     private static final int POLYNOMIAL = 0x1021; // CRC-16-CCITT
 
+    // TABLE[b] = CRC of byte b shifted through the top of the register
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            int crc = b << 8;
+            for (int i = 0; i < 8; i++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+            }
+            TABLE[b] = crc & 0xFFFF;
+        }
+    }
+
     public static int computeCRCDecimal(byte[] data) {
         int crc = 0xFFFF;
 
+        // One table lookup per byte instead of eight shift/XOR steps
         for (byte b : data) {
-            for (int i = 0; i < 8; i++) {
-                boolean bit = ((b >> (7 - i)) & 1) == 1;
-                boolean c15 = ((crc >> 15) & 1) == 1;
-                crc <<= 1;
-                if (c15 ^ bit) {
-                    crc ^= POLYNOMIAL;
-                }
-            }
+            crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ b) & 0xFF]) & 0xFFFF;
         }
 
-        crc &= 0xFFFF; // Ensure 16-bit result
         return crc % 256; // 🔁 Fit CRC decimal into [0, 255] range
     }
 }
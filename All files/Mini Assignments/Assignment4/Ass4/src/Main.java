@@ -5,7 +5,7 @@ public class Main {
     public static void main(String[] args) {
         try (Scanner sc = new Scanner(System.in)) {
             // Step 1: Load BMP image
-            System.out.print("Enter path to 256x256 BMP image: ");
+            System.out.print("Enter path to BMP image: ");
             String imagePath = sc.nextLine().trim();
             File imageFile = new File(imagePath);
 
@@ -0,0 +1,53 @@
+import java.awt.image.BufferedImage;
+
+// The difference map of a PixelDiff at an adjustable threshold, kept in one
+// image. Pixels are ordered by total delta, so the ones at or above a threshold
+// are a suffix of that order; moving the threshold only redraws the pixels
+// between the old and new suffix start - lit when it goes down, blacked out when
+// it goes up - instead of the whole map.
+public final class DifferenceMap {
+
+    private static final int BLACK = 0xFF000000;
+
+    private final PixelDiff diff;
+    private final BufferedImage image;
+    private final PixelRaster raster;
+    private final int[] order;
+    private int threshold;
+
+    public DifferenceMap(PixelDiff diff, int threshold) {
+        this.diff = diff;
+        this.image = diff.render(threshold);
+        this.raster = PixelRaster.of(image);
+        this.order = diff.order();
+        this.threshold = threshold;
+    }
+
+    // Updated in place by setThreshold
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    // Changed pixels drawn at the current threshold
+    public int getShownPixels() {
+        return diff.countAtLeast(threshold);
+    }
+
+    // Redraws the pixels whose total delta lies between the old and the new threshold; returns how
+    // many that was
+    public int setThreshold(int threshold) {
+        int from = diff.getChangedPixels() - diff.countAtLeast(Math.min(this.threshold, threshold));
+        int to = diff.getChangedPixels() - diff.countAtLeast(Math.max(this.threshold, threshold));
+        boolean show = threshold < this.threshold;
+        for (int k = from; k < to; k++) {
+            int i = order[k];
+            raster.setRGB(diff.getIndex(i), show ? PixelDiff.highlight(diff.getTotalDiff(i)) : BLACK);
+        }
+        this.threshold = threshold;
+        return to - from;
+    }
+}
@@ -11,8 +11,7 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import javax.imageio.ImageIO;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class ImageComparisonGUI extends JFrame {
     private JLabel originalImageLabel, watermarkedImageLabel, differenceImageLabel;
@@ -27,25 +26,8 @@ public class ImageComparisonGUI extends JFrame {
 
     private BufferedImage originalImage, watermarkedImage, differenceImage;
     private int currentMouseX = -1, currentMouseY = -1;
-    private List<PixelDifference> differences = new ArrayList<>();
-
-    // Class to store pixel difference information
-    private static class PixelDifference {
-        int x, y;
-        Color originalColor, watermarkedColor;
-        int redDiff, greenDiff, blueDiff, totalDiff;
-
-        PixelDifference(int x, int y, Color orig, Color water) {
-            this.x = x;
-            this.y = y;
-            this.originalColor = orig;
-            this.watermarkedColor = water;
-            this.redDiff = Math.abs(water.getRed() - orig.getRed());
-            this.greenDiff = Math.abs(water.getGreen() - orig.getGreen());
-            this.blueDiff = Math.abs(water.getBlue() - orig.getBlue());
-            this.totalDiff = redDiff + greenDiff + blueDiff;
-        }
-    }
+    private PixelDiff diff;
+    private DifferenceMap differenceMap;
 
     public ImageComparisonGUI() {
         initializeGUI();
@@ -342,59 +324,20 @@ public class ImageComparisonGUI extends JFrame {
             return;
         }
 
-        int width = Math.min(originalImage.getWidth(), watermarkedImage.getWidth());
-        int height = Math.min(originalImage.getHeight(), watermarkedImage.getHeight());
-
-        // Create difference image
-        differenceImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        differences.clear();
-
-        int totalPixels = width * height;
-        int changedPixels = 0;
-        int maxDifference = 0;
-        long totalDifference = 0;
-
-        analysisArea.setText("=== PIXEL-BY-PIXEL COMPARISON ANALYSIS ===\n\n");
-        analysisArea.append("Image Dimensions: " + width + "x" + height + " (" + totalPixels + " total pixels)\n\n");
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                Color originalColor = new Color(originalImage.getRGB(x, y));
-                Color watermarkedColor = new Color(watermarkedImage.getRGB(x, y));
-
-                int redDiff = Math.abs(watermarkedColor.getRed() - originalColor.getRed());
-                int greenDiff = Math.abs(watermarkedColor.getGreen() - originalColor.getGreen());
-                int blueDiff = Math.abs(watermarkedColor.getBlue() - originalColor.getBlue());
-                int totalDiff = redDiff + greenDiff + blueDiff;
-
-                if (totalDiff > 0) {
-                    changedPixels++;
-                    differences.add(new PixelDifference(x, y, originalColor, watermarkedColor));
-                    maxDifference = Math.max(maxDifference, totalDiff);
-                    totalDifference += totalDiff;
-                }
-
-                // Create enhanced difference visualization
-                int enhancedDiff = Math.min(255, totalDiff * 10); // Amplify differences
-                Color diffColor = totalDiff == 0 ? Color.BLACK :
-                        new Color(enhancedDiff, enhancedDiff/2, enhancedDiff/2);
-                differenceImage.setRGB(x, y, diffColor.getRGB());
-            }
-        }
+        // Row bands are diffed on every core; the result is the same as a single pass
+        diff = PixelDiff.compare(originalImage, watermarkedImage, ForkJoinPool.commonPool(),
+                PixelDiff.DEFAULT_BAND_ROWS);
+        differenceMap = new DifferenceMap(diff, (Integer)thresholdSpinner.getValue());
+        differenceImage = differenceMap.getImage();
 
-        updateImageDisplay();
+        int totalPixels = diff.getTotalPixels();
+        int changedPixels = diff.getChangedPixels();
+        int maxDifference = diff.getMaxDifference();
+        int lsbChanges = diff.getLsbChanges();
 
         // Calculate statistics
         double changePercentage = (changedPixels * 100.0) / totalPixels;
-        double avgDifference = changedPixels > 0 ? (double)totalDifference / changedPixels : 0;
-
-        // LSB Analysis
-        int lsbChanges = 0;
-        for (PixelDifference diff : differences) {
-            if (diff.redDiff <= 7 && diff.greenDiff <= 7 && diff.blueDiff <= 3) {
-                lsbChanges++;
-            }
-        }
+        double avgDifference = changedPixels > 0 ? (double) diff.getTotalDifference() / changedPixels : 0;
 
         // Analysis report - now condensed for summary
         analysisArea.setText("COMPARISON SUMMARY:\n");
@@ -441,33 +384,16 @@ public class ImageComparisonGUI extends JFrame {
     }
 
     private void updateDifferenceHighlight() {
-        if (differenceImage == null || differences.isEmpty()) return;
+        if (differenceMap == null) return;
 
         int threshold = (Integer)thresholdSpinner.getValue();
 
-        // Recreate difference image with threshold
-        BufferedImage newDiffImage = new BufferedImage(
-                differenceImage.getWidth(), differenceImage.getHeight(), BufferedImage.TYPE_INT_RGB);
-
-        // First, fill with black (no difference)
-        Graphics2D g2d = newDiffImage.createGraphics();
-        g2d.setColor(Color.BLACK);
-        g2d.fillRect(0, 0, newDiffImage.getWidth(), newDiffImage.getHeight());
-        g2d.dispose();
-
-        // Highlight pixels above threshold
-        for (PixelDifference diff : differences) {
-            if (diff.totalDiff >= threshold) {
-                int enhancedDiff = Math.min(255, diff.totalDiff * 10);
-                Color diffColor = new Color(enhancedDiff, enhancedDiff/2, enhancedDiff/2);
-                newDiffImage.setRGB(diff.x, diff.y, diffColor.getRGB());
-            }
-        }
-
-        differenceImage = newDiffImage;
+        // Only the pixels that cross between the old and new threshold are redrawn
+        differenceMap.setThreshold(threshold);
         updateImageDisplay();
 
-        long filteredCount = differences.stream().filter(d -> d.totalDiff >= threshold).count();
+        if (diff.getChangedPixels() == 0) return;
+        int filteredCount = differenceMap.getShownPixels();
         statsLabel.setText(statsLabel.getText() + " | Showing " + filteredCount + " pixels above threshold " + threshold);
     }
 
@@ -609,7 +535,7 @@ public class ImageComparisonGUI extends JFrame {
     }
 
     private void exportAnalysis(ActionEvent e) {
-        if (differences.isEmpty()) {
+        if (diff == null || diff.getChangedPixels() == 0) {
             JOptionPane.showMessageDialog(this, "No comparison data to export!");
             return;
         }
@@ -619,19 +545,13 @@ public class ImageComparisonGUI extends JFrame {
 
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
             try {
-                java.io.FileWriter writer = new java.io.FileWriter(fileChooser.getSelectedFile());
+                java.io.Writer writer = new java.io.BufferedWriter(new java.io.FileWriter(fileChooser.getSelectedFile()));
                 writer.write("=== WATERMARKING ANALYSIS REPORT ===\n");
                 writer.write("Generated: " + new java.util.Date() + "\n\n");
                 writer.write(analysisArea.getText());
                 writer.write("\n\n=== ALL CHANGED PIXELS ===\n");
 
-                for (PixelDifference diff : differences) {
-                    writer.write(String.format("Pixel (%d,%d): RGB(%d,%d,%d) -> RGB(%d,%d,%d) [Diff: R:%d G:%d B:%d Total:%d]\n",
-                            diff.x, diff.y,
-                            diff.originalColor.getRed(), diff.originalColor.getGreen(), diff.originalColor.getBlue(),
-                            diff.watermarkedColor.getRed(), diff.watermarkedColor.getGreen(), diff.watermarkedColor.getBlue(),
-                            diff.redDiff, diff.greenDiff, diff.blueDiff, diff.totalDiff));
-                }
+                diff.writeTo(writer);
 
                 writer.close();
                 JOptionPane.showMessageDialog(this, "Analysis report exported successfully!");
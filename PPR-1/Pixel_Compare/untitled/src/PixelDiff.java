@@ -0,0 +1,350 @@
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Every pixel that differs between two images, kept as parallel int arrays
+// rather than an object per pixel: the linear index (y * width + x), both packed
+// RGB values and the per-channel absolute deltas packed as 0x00RRGGBB. The arrays
+// and the summary statistics come out of one pass over the two rasters, and the
+// difference map, threshold counts and report are all worked out from them.
+//
+// The pass also counts the changed pixels by total delta (red + green + blue,
+// 1..765). The cumulative counts answer "how many at or above a threshold" in
+// constant time, and order() lists the pixels by total delta, so a
+// DifferenceMap can redraw just the pixels a threshold change moves across.
+//
+// Large images are compared in bands of rows on a ForkJoinPool: each band fills
+// its own arrays and statistics, and the bands are joined in row order at the
+// end, so the result is exactly the one a single pass gives.
+public final class PixelDiff {
+
+    // Rows per band; a band of a 6000-pixel-wide image is about 1.5 MB of each raster
+    public static final int DEFAULT_BAND_ROWS = 64;
+
+    // Deltas at or under these in every channel count as an LSB-only change (3-3-2 bits)
+    public static final int LSB_RED_MAX = 7;
+    public static final int LSB_GREEN_MAX = 7;
+    public static final int LSB_BLUE_MAX = 3;
+
+    // Largest red + green + blue delta a pixel can have
+    public static final int MAX_TOTAL_DIFF = 3 * 255;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int width;
+    private final int height;
+
+    private int size;
+    private int[] indices;
+    private int[] originals;
+    private int[] watermarks;
+    private int[] deltas;
+
+    private int maxDifference;
+    private long totalDifference;
+    private int lsbChanges;
+
+    // Changed pixels by total delta, then (once the pass is done) those at or above each total
+    private final int[] histogram = new int[MAX_TOTAL_DIFF + 1];
+    private final int[] atLeast = new int[MAX_TOTAL_DIFF + 2];
+
+    private PixelDiff(int width, int height, int initialCapacity) {
+        this.width = width;
+        this.height = height;
+        int capacity = Math.min(INITIAL_CAPACITY, initialCapacity);
+        indices = new int[capacity];
+        originals = new int[capacity];
+        watermarks = new int[capacity];
+        deltas = new int[capacity];
+    }
+
+    // Compares the overlapping top-left region of the two images in one pass on this thread
+    public static PixelDiff compare(BufferedImage original, BufferedImage watermarked) {
+        int width = Math.min(original.getWidth(), watermarked.getWidth());
+        int height = Math.min(original.getHeight(), watermarked.getHeight());
+        PixelDiff diff = compareRows(PixelRaster.of(original), PixelRaster.of(watermarked), width, height,
+                0, height);
+        diff.accumulate();
+        return diff;
+    }
+
+    // Same result as compare(original, watermarked), with bands of bandRows rows diffed in parallel
+    // on pool
+    public static PixelDiff compare(BufferedImage original, BufferedImage watermarked, ForkJoinPool pool,
+                                    int bandRows) {
+        if (bandRows < 1) {
+            throw new IllegalArgumentException("A band must hold at least one row: " + bandRows);
+        }
+        int width = Math.min(original.getWidth(), watermarked.getWidth());
+        int height = Math.min(original.getHeight(), watermarked.getHeight());
+        int bandCount = Math.max(1, (height + bandRows - 1) / bandRows);
+
+        PixelDiff[] bands = new PixelDiff[bandCount];
+        pool.invoke(new BandTask(PixelRaster.of(original), PixelRaster.of(watermarked), width, height, bandRows,
+                bands, 0, bandCount));
+        PixelDiff diff = join(width, height, bands);
+        diff.accumulate();
+        return diff;
+    }
+
+    private static PixelDiff compareRows(PixelRaster originalRaster, PixelRaster watermarkedRaster,
+                                         int width, int height, int fromRow, int toRow) {
+        PixelDiff diff = new PixelDiff(width, height, (toRow - fromRow) * width);
+        int[] originalRow = new int[width];
+        int[] watermarkedRow = new int[width];
+        for (int y = fromRow; y < toRow; y++) {
+            originalRaster.getRGB(y * originalRaster.getWidth(), originalRow, 0, width);
+            watermarkedRaster.getRGB(y * watermarkedRaster.getWidth(), watermarkedRow, 0, width);
+            diff.addRow(y * width, originalRow, watermarkedRow, width);
+        }
+        return diff;
+    }
+
+    // The bands' pixels one after another, with their statistics merged
+    private static PixelDiff join(int width, int height, PixelDiff[] bands) {
+        if (bands.length == 1) {
+            return bands[0];
+        }
+
+        int size = 0;
+        for (PixelDiff band : bands) {
+            size += band.size;
+        }
+        PixelDiff diff = new PixelDiff(width, height, 0);
+        diff.indices = new int[size];
+        diff.originals = new int[size];
+        diff.watermarks = new int[size];
+        diff.deltas = new int[size];
+        for (PixelDiff band : bands) {
+            System.arraycopy(band.indices, 0, diff.indices, diff.size, band.size);
+            System.arraycopy(band.originals, 0, diff.originals, diff.size, band.size);
+            System.arraycopy(band.watermarks, 0, diff.watermarks, diff.size, band.size);
+            System.arraycopy(band.deltas, 0, diff.deltas, diff.size, band.size);
+            diff.size += band.size;
+            diff.maxDifference = Math.max(diff.maxDifference, band.maxDifference);
+            diff.totalDifference += band.totalDifference;
+            diff.lsbChanges += band.lsbChanges;
+            for (int total = 1; total <= MAX_TOTAL_DIFF; total++) {
+                diff.histogram[total] += band.histogram[total];
+            }
+        }
+        return diff;
+    }
+
+    // Splits the band range in half until one band is left, which it diffs into bands[from]
+    private static final class BandTask extends RecursiveAction {
+        private final PixelRaster originalRaster;
+        private final PixelRaster watermarkedRaster;
+        private final int width;
+        private final int height;
+        private final int bandRows;
+        private final PixelDiff[] bands;
+        private final int from;
+        private final int to;
+
+        BandTask(PixelRaster originalRaster, PixelRaster watermarkedRaster, int width, int height, int bandRows,
+                 PixelDiff[] bands, int from, int to) {
+            this.originalRaster = originalRaster;
+            this.watermarkedRaster = watermarkedRaster;
+            this.width = width;
+            this.height = height;
+            this.bandRows = bandRows;
+            this.bands = bands;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BandTask(originalRaster, watermarkedRaster, width, height, bandRows, bands, from, middle),
+                        new BandTask(originalRaster, watermarkedRaster, width, height, bandRows, bands, middle, to));
+                return;
+            }
+
+            int fromRow = from * bandRows;
+            int toRow = Math.min(height, fromRow + bandRows);
+            bands[from] = compareRows(originalRaster, watermarkedRaster, width, height, fromRow, toRow);
+        }
+    }
+
+    private void addRow(int rowIndex, int[] originalRow, int[] watermarkedRow, int width) {
+        for (int x = 0; x < width; x++) {
+            int before = originalRow[x];
+            int after = watermarkedRow[x];
+            if (((before ^ after) & 0xFFFFFF) == 0) {
+                continue;
+            }
+
+            int red = Math.abs((after >> 16 & 0xFF) - (before >> 16 & 0xFF));
+            int green = Math.abs((after >> 8 & 0xFF) - (before >> 8 & 0xFF));
+            int blue = Math.abs((after & 0xFF) - (before & 0xFF));
+            int total = red + green + blue;
+
+            if (size == indices.length) {
+                grow();
+            }
+            indices[size] = rowIndex + x;
+            originals[size] = before & 0xFFFFFF;
+            watermarks[size] = after & 0xFFFFFF;
+            deltas[size] = red << 16 | green << 8 | blue;
+            size++;
+
+            histogram[total]++;
+            maxDifference = Math.max(maxDifference, total);
+            totalDifference += total;
+            if (red <= LSB_RED_MAX && green <= LSB_GREEN_MAX && blue <= LSB_BLUE_MAX) {
+                lsbChanges++;
+            }
+        }
+    }
+
+    private void accumulate() {
+        for (int total = MAX_TOTAL_DIFF; total >= 0; total--) {
+            atLeast[total] = atLeast[total + 1] + histogram[total];
+        }
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min(Math.max(1L, indices.length * 2L), (long) width * height);
+        indices = Arrays.copyOf(indices, capacity);
+        originals = Arrays.copyOf(originals, capacity);
+        watermarks = Arrays.copyOf(watermarks, capacity);
+        deltas = Arrays.copyOf(deltas, capacity);
+    }
+
+    // Width and height of the compared region
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTotalPixels() {
+        return width * height;
+    }
+
+    public int getChangedPixels() {
+        return size;
+    }
+
+    // Largest red + green + blue delta of any pixel
+    public int getMaxDifference() {
+        return maxDifference;
+    }
+
+    public long getTotalDifference() {
+        return totalDifference;
+    }
+
+    // Changed pixels whose deltas all stay within the 3-3-2 low bits
+    public int getLsbChanges() {
+        return lsbChanges;
+    }
+
+    // Linear index y * getWidth() + x of changed pixel i
+    public int getIndex(int i) {
+        return indices[i];
+    }
+
+    public int getX(int i) {
+        return indices[i] % width;
+    }
+
+    public int getY(int i) {
+        return indices[i] / width;
+    }
+
+    // Packed 0xRRGGBB of changed pixel i in each image
+    public int getOriginalRGB(int i) {
+        return originals[i];
+    }
+
+    public int getWatermarkedRGB(int i) {
+        return watermarks[i];
+    }
+
+    public int getRedDiff(int i) {
+        return deltas[i] >>> 16;
+    }
+
+    public int getGreenDiff(int i) {
+        return deltas[i] >>> 8 & 0xFF;
+    }
+
+    public int getBlueDiff(int i) {
+        return deltas[i] & 0xFF;
+    }
+
+    public int getTotalDiff(int i) {
+        int delta = deltas[i];
+        return (delta >>> 16) + (delta >>> 8 & 0xFF) + (delta & 0xFF);
+    }
+
+    // Changed pixels whose total delta is exactly total
+    public int countWithTotal(int total) {
+        return total < 0 || total > MAX_TOTAL_DIFF ? 0 : histogram[total];
+    }
+
+    // Changed pixels whose total delta is at least threshold
+    public int countAtLeast(int threshold) {
+        return atLeast[Math.max(0, Math.min(threshold, MAX_TOTAL_DIFF + 1))];
+    }
+
+    // Changed pixel numbers (the i of the getters) by ascending total delta, row order within a total.
+    // The countAtLeast(threshold) pixels at or above threshold are the last ones.
+    public int[] order() {
+        int[] next = new int[MAX_TOTAL_DIFF + 1];
+        for (int total = 0; total <= MAX_TOTAL_DIFF; total++) {
+            next[total] = size - atLeast[total];
+        }
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[next[getTotalDiff(i)]++] = i;
+        }
+        return order;
+    }
+
+    // Difference map of the compared region: black where nothing changed or the total delta is
+    // under threshold, otherwise a red shade ten times the delta
+    public BufferedImage render(int threshold) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        PixelRaster raster = PixelRaster.of(image);
+        for (int i = 0; i < size; i++) {
+            int total = getTotalDiff(i);
+            if (total >= threshold) {
+                raster.setRGB(indices[i], highlight(total));
+            }
+        }
+        return image;
+    }
+
+    public static int highlight(int totalDiff) {
+        int enhanced = Math.min(255, totalDiff * 10);
+        return 0xFF000000 | enhanced << 16 | (enhanced / 2) << 8 | enhanced / 2;
+    }
+
+    // One line per changed pixel, in row order:
+    //   Pixel (x,y): RGB(r,g,b) -> RGB(r,g,b) [Diff: R:r G:g B:b Total:t]
+    public void writeTo(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder(96);
+        for (int i = 0; i < size; i++) {
+            int before = originals[i];
+            int after = watermarks[i];
+            line.setLength(0);
+            line.append("Pixel (").append(getX(i)).append(',').append(getY(i)).append("): RGB(")
+                    .append(before >> 16).append(',').append(before >> 8 & 0xFF).append(',').append(before & 0xFF)
+                    .append(") -> RGB(")
+                    .append(after >> 16).append(',').append(after >> 8 & 0xFF).append(',').append(after & 0xFF)
+                    .append(") [Diff: R:").append(getRedDiff(i)).append(" G:").append(getGreenDiff(i))
+                    .append(" B:").append(getBlueDiff(i)).append(" Total:").append(getTotalDiff(i)).append("]\n");
+            out.append(line);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// An embed/extract job run on a SwingWorker thread so the window stays
+// responsive on multi-megapixel images and long WAVs. work() runs in the
+// background and reports through step(); succeeded(), failed() and cancelled()
+// run back on the EDT once it is over.
+//
+// A small progress dialog with a Cancel button appears if the job takes longer
+// than DIALOG_DELAY_MS. Cancelling is cooperative: the next step() call throws,
+// so work() should build its result in fresh objects and leave the window's
+// fields alone - succeeded() is where the result is taken over.
+//
+// The worker thread is never interrupted: an interrupted read on a FileChannel
+// closes the channel for good, and a loaded WavFile shares its channel with
+// every later job. A job stuck in a blocking call is released by cancelled(),
+// e.g. by closing the audio line it writes to.
+//
+// SwingWorker reports a cancelled job as done at once, while work() may still
+// be running up to its next step(). The controls therefore stay disabled, and
+// cancelled() waits, until work() has really returned; only then is it safe to
+// touch whatever the job was using.
+public abstract class BackgroundTask<T> extends SwingWorker<T, Void> {
+
+    private static final int DIALOG_DELAY_MS = 300;
+
+    // Where work() is; a job cancelled while PENDING never runs
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int RETURNED = 2;
+
+    private final Component owner;
+    private final String title;
+
+    private JDialog dialog;
+    private JProgressBar progressBar;
+    private JLabel noteLabel;
+    private Timer dialogTimer;
+
+    private Component[] busy = new Component[0];
+    private boolean[] wasEnabled = new boolean[0];
+
+    private final AtomicInteger phase = new AtomicInteger(PENDING);
+    // EDT only
+    private boolean doneCalled;
+    private boolean finished;
+
+    protected BackgroundTask(Component owner, String title) {
+        this.owner = owner;
+        this.title = title;
+    }
+
+    // Runs off the EDT: must not touch Swing components
+    protected abstract T work() throws Exception;
+
+    protected abstract void succeeded(T result);
+
+    protected void failed(Throwable error) {
+        error.printStackTrace();
+        JOptionPane.showMessageDialog(owner, title + " failed: " + error.getMessage(), "Error",
+                JOptionPane.ERROR_MESSAGE);
+    }
+
+    protected void cancelled() {
+    }
+
+    // Report progress (0-100) with a short note for the dialog; throws
+    // CancellationException once the user has pressed Cancel
+    protected final void step(int percent, String note) {
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+        setProgress(Math.max(0, Math.min(100, percent)));
+        firePropertyChange("note", null, note);
+    }
+
+    // Start the job, disabling the given controls until it is over. Call on the EDT.
+    public final void start(Component... busy) {
+        this.busy = busy;
+        this.wasEnabled = new boolean[busy.length];
+        for (int i = 0; i < busy.length; i++) {
+            wasEnabled[i] = busy[i].isEnabled();
+            busy[i].setEnabled(false);
+        }
+        owner.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+
+        // Property changes from the worker thread are delivered on the EDT
+        addPropertyChangeListener(event -> {
+            if (dialog == null) {
+                return;
+            }
+            if ("progress".equals(event.getPropertyName())) {
+                progressBar.setIndeterminate(false);
+                progressBar.setValue((Integer) event.getNewValue());
+            } else if ("note".equals(event.getPropertyName())) {
+                noteLabel.setText((String) event.getNewValue());
+            }
+        });
+
+        dialogTimer = new Timer(DIALOG_DELAY_MS, _ -> showDialog());
+        dialogTimer.setRepeats(false);
+        dialogTimer.start();
+
+        execute();
+    }
+
+    @Override
+    protected final T doInBackground() throws Exception {
+        if (!phase.compareAndSet(PENDING, RUNNING)) {
+            throw new CancellationException();
+        }
+        try {
+            return work();
+        } finally {
+            phase.set(RETURNED);
+            SwingUtilities.invokeLater(this::finish);
+        }
+    }
+
+    // On a cancel this runs while work() may still be going; finish() then waits for it to return
+    @Override
+    protected final void done() {
+        doneCalled = true;
+        phase.compareAndSet(PENDING, RETURNED);
+        finish();
+    }
+
+    // Runs once both done() has been called and work() has returned (or will never run)
+    private void finish() {
+        if (finished || !doneCalled || phase.get() != RETURNED) {
+            return;
+        }
+        finished = true;
+
+        dialogTimer.stop();
+        if (dialog != null) {
+            dialog.dispose();
+            dialog = null;
+        }
+        // Restore the controls first so succeeded() can enable or disable them as it likes
+        for (int i = 0; i < busy.length; i++) {
+            busy[i].setEnabled(wasEnabled[i]);
+        }
+        owner.setCursor(Cursor.getDefaultCursor());
+
+        if (isCancelled()) {
+            cancelled();
+            return;
+        }
+        try {
+            succeeded(get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                cancelled();
+            } else {
+                failed(e.getCause());
+            }
+        } catch (InterruptedException e) {
+            // get() does not block once done() is called
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void showDialog() {
+        if (isDone()) {
+            return;
+        }
+
+        Window window = owner instanceof Window w ? w : SwingUtilities.getWindowAncestor(owner);
+        dialog = new JDialog(window, title, Dialog.ModalityType.MODELESS);
+        dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setIndeterminate(getProgress() == 0);
+        progressBar.setValue(getProgress());
+        progressBar.setStringPainted(true);
+
+        noteLabel = new JLabel(title + "...");
+
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(_ -> {
+            cancelButton.setEnabled(false);
+            noteLabel.setText("Cancelling...");
+            cancel(false);
+        });
+
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        panel.add(noteLabel, BorderLayout.NORTH);
+        panel.add(progressBar, BorderLayout.CENTER);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(cancelButton);
+        panel.add(buttons, BorderLayout.SOUTH);
+
+        dialog.add(panel);
+        dialog.setSize(360, 140);
+        dialog.setLocationRelativeTo(owner);
+        dialog.setVisible(true);
+    }
+}
@@ -0,0 +1,242 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Headless batch runner for StegoUtils. Walks a directory tree, streams every
+// BMP through a bounded queue to a pool of worker threads and prints the
+// throughput and any per-file failures at the end. Plain 24/32-bit BMPs are
+// memory-mapped (MappedBmp) so only the pixels on the hop path are touched;
+// anything else goes through ImageIO.
+//
+//   java BatchWatermarker embed <inputDir> <outputDir> <watermark> <password> [--threads N]
+//   java BatchWatermarker extract <inputDir> <password> [--threads N]
+public class BatchWatermarker {
+
+    // Marks the end of the work queue, one per worker
+    private static final Path END_OF_QUEUE = Paths.get("");
+
+    private final boolean embed;
+    private final Path inputDir;
+    private final Path outputDir;
+    private final String watermark;
+    private final String password;
+    private final KeySchedule key;
+    private final int threads;
+
+    private final AtomicInteger processed = new AtomicInteger();
+    private final ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+
+    public BatchWatermarker(boolean embed, Path inputDir, Path outputDir, String watermark, String password,
+                            int threads) {
+        this.embed = embed;
+        this.inputDir = inputDir;
+        this.outputDir = outputDir != null ? outputDir.toAbsolutePath().normalize() : null;
+        this.watermark = watermark;
+        this.password = password;
+        this.key = KeySchedule.forStego(password);
+        this.threads = threads;
+    }
+
+    public int run() throws IOException, InterruptedException {
+        BlockingQueue<Path> queue = new ArrayBlockingQueue<>(threads * 4);
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.execute(() -> work(queue));
+        }
+
+        long start = System.nanoTime();
+        int queued = 0;
+        try (Stream<Path> files = Files.walk(inputDir)) {
+            for (Path file : (Iterable<Path>) files.filter(BatchWatermarker::isBmp)::iterator) {
+                if (outputDir != null && file.toAbsolutePath().normalize().startsWith(outputDir)) {
+                    continue; // never re-watermark our own output
+                }
+                queue.put(file);
+                queued++;
+            }
+        } finally {
+            for (int i = 0; i < threads; i++) {
+                queue.put(END_OF_QUEUE);
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Processed %d of %d images in %.2f s (%.1f images/sec) using %d threads%n",
+                processed.get(), queued, seconds, processed.get() / Math.max(seconds, 1e-9), threads);
+
+        if (failures.isEmpty()) {
+            System.out.println("Failures: 0");
+            return 0;
+        }
+
+        List<String> sorted = new ArrayList<>(failures);
+        sorted.sort(null);
+        System.out.println("Failures: " + sorted.size());
+        for (String failure : sorted) {
+            System.out.println("  " + failure);
+        }
+        return 1;
+    }
+
+    private void work(BlockingQueue<Path> queue) {
+        try {
+            while (true) {
+                Path file = queue.take();
+                if (file == END_OF_QUEUE) {
+                    return;
+                }
+                try {
+                    if (embed) {
+                        embed(file);
+                    } else {
+                        extract(file);
+                    }
+                    processed.incrementAndGet();
+                } catch (Exception ex) {
+                    String reason = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName();
+                    failures.add(inputDir.relativize(file) + ": " + reason);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void embed(Path file) throws IOException {
+        Path target = outputDir.resolve(inputDir.relativize(file));
+        Files.createDirectories(target.getParent());
+
+        // A target left half written would pass for a good result, so any failure removes it; the
+        // catch also covers mapping the copy and flushing it on close
+        if (MappedBmp.isSupported(file)) {
+            try (MappedBmp bmp = MappedBmp.copyTo(file, target)) {
+                StegoUtils.embedWatermark(bmp, watermark, key);
+            } catch (IOException | RuntimeException ex) {
+                deletePartial(target, ex);
+                throw ex;
+            }
+            return;
+        }
+
+        BufferedImage image = read(file);
+        StegoUtils.embedWatermark(PixelRaster.of(image), watermark, key);
+        try {
+            if (!ImageIO.write(image, "bmp", target.toFile())) {
+                throw new IOException("no BMP writer for image type " + image.getType());
+            }
+        } catch (IOException | RuntimeException ex) {
+            deletePartial(target, ex);
+            throw ex;
+        }
+    }
+
+    private static void deletePartial(Path target, Exception cause) {
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException ex) {
+            cause.addSuppressed(ex);
+        }
+    }
+
+    private void extract(Path file) throws IOException {
+        String extracted;
+        if (MappedBmp.isSupported(file)) {
+            try (MappedBmp bmp = MappedBmp.open(file, FileChannel.MapMode.READ_ONLY)) {
+                extracted = StegoUtils.extractWatermark(bmp, key);
+            }
+        } else {
+            extracted = StegoUtils.extractWatermark(PixelRaster.of(read(file)), key);
+        }
+        if (StegoUtils.WRONG_PASSWORD.equals(extracted) || StegoUtils.NOT_FOUND.equals(extracted)) {
+            throw new IOException(extracted);
+        }
+        System.out.println(inputDir.relativize(file) + ": " + extracted);
+    }
+
+    private static BufferedImage read(Path file) throws IOException {
+        BufferedImage image = ImageIO.read(file.toFile());
+        if (image == null) {
+            throw new IOException("not a readable image");
+        }
+        return image;
+    }
+
+    private static boolean isBmp(Path file) {
+        return Files.isRegularFile(file) && file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".bmp");
+    }
+
+    private static void usage() {
+        System.err.println("Usage:");
+        System.err.println("  java BatchWatermarker embed <inputDir> <outputDir> <watermark> <password> [--threads N]");
+        System.err.println("  java BatchWatermarker extract <inputDir> <password> [--threads N]");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> positional = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                try {
+                    threads = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException ex) {
+                    usage();
+                }
+            } else {
+                positional.add(args[i]);
+            }
+        }
+
+        if (positional.isEmpty() || threads < 1) {
+            usage();
+        }
+
+        BatchWatermarker runner;
+        if (positional.get(0).equals("embed") && positional.size() == 5) {
+            String watermark = positional.get(3);
+            if (watermark.isEmpty()) {
+                System.err.println("Watermark cannot be empty.");
+                System.exit(2);
+            }
+            runner = new BatchWatermarker(true, Paths.get(positional.get(1)), Paths.get(positional.get(2)),
+                    watermark, positional.get(4), threads);
+        } else if (positional.get(0).equals("extract") && positional.size() == 3) {
+            runner = new BatchWatermarker(false, Paths.get(positional.get(1)), null, null, positional.get(2),
+                    threads);
+        } else {
+            usage();
+            return;
+        }
+
+        if (runner.password.isEmpty()) {
+            System.err.println("Password cannot be empty.");
+            System.exit(2);
+        }
+
+        if (!Files.isDirectory(runner.inputDir)) {
+            System.err.println("Input directory not found: " + runner.inputDir);
+            System.exit(2);
+        }
+
+        System.exit(runner.run());
+    }
+}
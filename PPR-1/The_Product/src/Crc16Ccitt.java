@@ -0,0 +1,67 @@
+import java.util.zip.Checksum;
+
+// CRC-16-CCITT (polynomial 0x1021, initial value 0xFFFF, no reflection, no
+// final XOR), the "CCITT-FALSE" variant also used by the Assignment 4 CRCUtil.
+// Table driven, with the bulk update consuming four bytes per step (slicing-by-4).
+public final class Crc16Ccitt implements Checksum {
+
+    private static final int POLYNOMIAL = 0x1021;
+    private static final int INITIAL = 0xFFFF;
+
+    // TABLES[k][b] = CRC (from zero) of byte b followed by k zero bytes
+    private static final int[][] TABLES = new int[4][256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            int crc = b << 8;
+            for (int i = 0; i < 8; i++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+            }
+            TABLES[0][b] = crc & 0xFFFF;
+        }
+        for (int k = 1; k < 4; k++) {
+            for (int b = 0; b < 256; b++) {
+                int prev = TABLES[k - 1][b];
+                TABLES[k][b] = ((prev << 8) ^ TABLES[0][prev >>> 8]) & 0xFFFF;
+            }
+        }
+    }
+
+    private int crc = INITIAL;
+
+    @Override
+    public void update(int b) {
+        crc = ((crc << 8) ^ TABLES[0][((crc >>> 8) ^ b) & 0xFF]) & 0xFFFF;
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int[] t0 = TABLES[0];
+        int[] t1 = TABLES[1];
+        int[] t2 = TABLES[2];
+        int[] t3 = TABLES[3];
+        int c = crc;
+        int end = off + len;
+
+        for (; off + 4 <= end; off += 4) {
+            c = t3[((c >>> 8) ^ b[off]) & 0xFF]
+                    ^ t2[(c ^ b[off + 1]) & 0xFF]
+                    ^ t1[b[off + 2] & 0xFF]
+                    ^ t0[b[off + 3] & 0xFF];
+        }
+        for (; off < end; off++) {
+            c = ((c << 8) ^ t0[((c >>> 8) ^ b[off]) & 0xFF]) & 0xFFFF;
+        }
+        crc = c;
+    }
+
+    @Override
+    public long getValue() {
+        return crc;
+    }
+
+    @Override
+    public void reset() {
+        crc = INITIAL;
+    }
+}
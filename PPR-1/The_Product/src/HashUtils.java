@@ -1,35 +1,79 @@
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
+// Digests and checksums for the watermarking schemes. MessageDigest instances are
+// not thread-safe and cost a provider lookup to create, so each thread keeps one
+// per algorithm and reuses it; digest() leaves it reset for the next caller.
 public class HashUtils {
 
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> newDigest("MD5"));
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> newDigest("SHA-256"));
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     // Generate SHA-256 hash of a password
     public static byte[] getSHA256Hash(String password) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            return digest.digest(password.getBytes());
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            return null;
+        return getSHA256Hash(password.getBytes());
+    }
+
+    public static byte[] getSHA256Hash(byte[] input) {
+        return SHA256.get().digest(input);
+    }
+
+    public static byte[] getMD5Hash(String input) {
+        return getMD5Hash(input.getBytes());
+    }
+
+    public static byte[] getMD5Hash(byte[] input) {
+        return MD5.get().digest(input);
+    }
+
+    // This thread's SHA-256 instance, reset, for digests fed in several update() calls.
+    // Finish with digest() before anything else on the thread hashes.
+    public static MessageDigest sha256() {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return digest;
+    }
+
+    // XOR of the unsigned bytes hash[from, to), 0-255
+    public static int xorBytes(byte[] hash, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            result ^= hash[i] & 0xFF;
+        }
+        return result;
+    }
+
+    // Lower-case hex, two digits per byte; for logs
+    public static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0x0F];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0x0F];
         }
+        return new String(hex);
     }
 
     // Compute CRC-8 from a byte array
     public static int getCRC8(byte[] data) {
-        int crc = 0x00;
-        int polynomial = 0x07;
-
-        for (byte b : data) {
-            crc ^= b & 0xFF;
-            for (int i = 0; i < 8; i++) {
-                if ((crc & 0x80) != 0) {
-                    crc = (crc << 1) ^ polynomial;
-                } else {
-                    crc <<= 1;
-                }
-                crc &= 0xFF;
-            }
+        Crc8 crc = new Crc8();
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    // Compute CRC-16-CCITT from a byte array
+    public static int getCRC16(byte[] data) {
+        Crc16Ccitt crc = new Crc16Ccitt();
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " algorithm not available", e);
         }
-        return crc;
     }
 }
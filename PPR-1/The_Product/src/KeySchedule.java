@@ -0,0 +1,142 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Hop parameters derived from a password, computed once and reused for every
+// image the password is applied to:
+//   step        - distance between consecutive pixels on the hop path
+//   baseOffset  - first pixel of the hop path
+//   hopDistance - first hop after the base offset
+//
+// Schedules are kept in a bounded LRU cache. The cache is keyed by a salted
+// SHA-256 digest of the password, so plain-text passwords are never held as keys.
+public final class KeySchedule {
+
+    private static final int CACHE_SIZE = 256;
+
+    private static final String STEGO = "stego";
+    private static final String DWM2 = "dwm2";
+    private static final String SEQUENTIAL_XOR = "xor";
+    private static final String AUDIO = "audio";
+
+    private static final byte[] SALT = new byte[16];
+
+    static {
+        new SecureRandom().nextBytes(SALT);
+    }
+
+    private static final Map<ByteBuffer, KeySchedule> CACHE = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, KeySchedule> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final int step;
+    private final int baseOffset;
+    private final int hopDistance;
+
+    public KeySchedule(int step, int baseOffset, int hopDistance) {
+        this.step = step;
+        this.baseOffset = baseOffset;
+        this.hopDistance = hopDistance;
+    }
+
+    // StegoUtils: start at pixel 0 and hop by CRC-8(SHA-256(password)) + 1
+    public static KeySchedule forStego(String password) {
+        ByteBuffer key = cacheKey(STEGO, password);
+        KeySchedule cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        byte[] hash = HashUtils.getSHA256Hash(password);
+        int step = HashUtils.getCRC8(hash) + 1;
+        return store(key, new KeySchedule(step, 0, step));
+    }
+
+    // DWM2: X = XOR of MD5 bytes 0-11 (base offset and timestamp step), Y = XOR of bytes 12-15 (first hop)
+    public static KeySchedule forDwm2(String password) {
+        ByteBuffer key = cacheKey(DWM2, password);
+        KeySchedule cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        byte[] md5 = HashUtils.getMD5Hash(password);
+        int x = HashUtils.xorBytes(md5, 0, 12);
+        int y = HashUtils.xorBytes(md5, 12, 16);
+        return store(key, new KeySchedule(x, x, y));
+    }
+
+    // AudioWatermark: the base offset is the XOR of all MD5 bytes of the watermark itself.
+    // The path then hops by each watermark character in turn, so the hop distance is the
+    // first character and the step, used for the timestamp and end marker, the last one.
+    public static KeySchedule forAudio(String watermark) {
+        if (watermark.isEmpty()) {
+            throw new IllegalArgumentException("Watermark cannot be empty");
+        }
+        ByteBuffer key = cacheKey(AUDIO, watermark);
+        KeySchedule cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        int baseOffset = HashUtils.xorBytes(HashUtils.getMD5Hash(watermark), 0, 16);
+        return store(key, new KeySchedule(watermark.charAt(watermark.length() - 1), baseOffset,
+                watermark.charAt(0)));
+    }
+
+    // DigitalWatermarkingGUI: step = XOR of all SHA-256 bytes (1 if that is 0), starting one step in
+    public static KeySchedule forSequentialXor(String password) {
+        ByteBuffer key = cacheKey(SEQUENTIAL_XOR, password);
+        KeySchedule cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        byte[] sha256 = HashUtils.getSHA256Hash(password.getBytes(StandardCharsets.UTF_8));
+        int step = HashUtils.xorBytes(sha256, 0, sha256.length);
+        if (step == 0) {
+            step = 1;
+        }
+        return store(key, new KeySchedule(step, step, step));
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public int getBaseOffset() {
+        return baseOffset;
+    }
+
+    public int getHopDistance() {
+        return hopDistance;
+    }
+
+    private static ByteBuffer cacheKey(String scheme, String password) {
+        MessageDigest digest = HashUtils.sha256();
+        digest.update(SALT);
+        digest.update(scheme.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(password.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(digest.digest());
+    }
+
+    private static KeySchedule lookup(ByteBuffer key) {
+        synchronized (CACHE) {
+            return CACHE.get(key);
+        }
+    }
+
+    private static KeySchedule store(ByteBuffer key, KeySchedule schedule) {
+        synchronized (CACHE) {
+            CACHE.put(key, schedule);
+        }
+        return schedule;
+    }
+}
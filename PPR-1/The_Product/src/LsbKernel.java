@@ -0,0 +1,26 @@
+// Bit-level kernel for the 3-3-2 LSB layout shared by all the image engines:
+// the top 3 bits of a byte go into the red LSBs, the next 3 into green and the
+// last 2 into blue. Works on packed 0xAARRGGBB ints with shifts and masks only.
+public final class LsbKernel {
+
+    // Bits of a packed pixel that are kept when a byte is embedded
+    public static final int KEEP_MASK = 0xFFF8F8FC;
+
+    private LsbKernel() {
+    }
+
+    // Embed the low 8 bits of value into the LSBs of a packed pixel
+    public static int embed(int rgb, int value) {
+        return (rgb & KEEP_MASK)
+                | ((value & 0xE0) << 11)
+                | ((value & 0x1C) << 6)
+                | (value & 0x03);
+    }
+
+    // Read back the byte stored in the LSBs of a packed pixel
+    public static int extract(int rgb) {
+        return ((rgb >> 11) & 0xE0)
+                | ((rgb >> 6) & 0x1C)
+                | (rgb & 0x03);
+    }
+}
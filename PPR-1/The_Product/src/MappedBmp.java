@@ -0,0 +1,181 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Uncompressed 24/32-bit BMP accessed through FileChannel.map instead of a
+// BufferedImage. Pixels are addressed by the same top-down linear index as
+// PixelRaster; the header, bottom-up row order and 4-byte row padding are
+// handled here, so the LSB engines only touch the pixels on their hop path.
+//
+// READ_WRITE edits the file in place, PRIVATE gives a copy-on-write view whose
+// changes never reach the disk, and copyTo() clones the file before mapping it
+// writable so the original stays untouched.
+public final class MappedBmp extends PixelRaster implements Closeable {
+
+    private static final int FILE_HEADER_SIZE = 14;
+    private static final int INFO_HEADER_SIZE = 40;
+    private static final int BI_RGB = 0;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer pixels;
+    private final int pixelOffset;
+    private final int rowStride;
+    private final int bytesPerPixel;
+    private final boolean bottomUp;
+
+    private MappedBmp(FileChannel channel, MappedByteBuffer pixels, Header header) {
+        super(header.width, header.height);
+        this.channel = channel;
+        this.pixels = pixels;
+        this.pixelOffset = header.pixelOffset;
+        this.rowStride = header.rowStride;
+        this.bytesPerPixel = header.bitsPerPixel / 8;
+        this.bottomUp = header.bottomUp;
+    }
+
+    public static MappedBmp open(Path file, FileChannel.MapMode mode) throws IOException {
+        // PRIVATE (copy-on-write) mappings also need a writable channel, though the file never changes
+        FileChannel channel = mode != FileChannel.MapMode.READ_ONLY
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            Header header = readHeader(channel);
+            long end = (long) header.pixelOffset + (long) header.rowStride * header.height;
+            if (end > channel.size()) {
+                throw new IOException("Truncated BMP: pixel data ends at " + end + ", file has " + channel.size());
+            }
+            if (end > Integer.MAX_VALUE) {
+                throw new IOException("BMP larger than 2 GB cannot be mapped");
+            }
+            MappedByteBuffer pixels = channel.map(mode, 0, end);
+            return new MappedBmp(channel, pixels, header);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    // Copy source to target and map the copy for in-place editing
+    public static MappedBmp copyTo(Path source, Path target) throws IOException {
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        return open(target, FileChannel.MapMode.READ_WRITE);
+    }
+
+    // True when the file is a BMP this class can map (uncompressed, 24 or 32 bits per pixel)
+    public static boolean isSupported(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            readHeader(channel);
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public int getRGB(int index) {
+        int p = offsetOf(index);
+        return 0xFF000000
+                | (pixels.get(p + 2) & 0xFF) << 16
+                | (pixels.get(p + 1) & 0xFF) << 8
+                | (pixels.get(p) & 0xFF);
+    }
+
+    @Override
+    public void setRGB(int index, int rgb) {
+        int p = offsetOf(index);
+        pixels.put(p, (byte) rgb);
+        pixels.put(p + 1, (byte) (rgb >> 8));
+        pixels.put(p + 2, (byte) (rgb >> 16));
+    }
+
+    // Flush in-place edits to the file
+    public void force() {
+        if (!pixels.isReadOnly()) {
+            pixels.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private int offsetOf(int index) {
+        int x = index % width;
+        int y = index / width;
+        int row = bottomUp ? height - 1 - y : y;
+        return pixelOffset + row * rowStride + x * bytesPerPixel;
+    }
+
+    private static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(FILE_HEADER_SIZE + INFO_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, buf.position()) < 0) {
+                throw new IOException("Not a BMP file: header too short");
+            }
+        }
+
+        if (buf.get(0) != 'B' || buf.get(1) != 'M') {
+            throw new IOException("Not a BMP file: missing BM signature");
+        }
+
+        int infoSize = buf.getInt(14);
+        if (infoSize < INFO_HEADER_SIZE) {
+            throw new IOException("Unsupported BMP: " + infoSize + "-byte info header");
+        }
+
+        Header header = new Header();
+        header.pixelOffset = buf.getInt(10);
+        header.width = buf.getInt(18);
+        int height = buf.getInt(22);
+        header.bitsPerPixel = buf.getShort(28);
+        int compression = buf.getInt(30);
+
+        if (header.bitsPerPixel != 24 && header.bitsPerPixel != 32) {
+            throw new IOException("Unsupported BMP: " + header.bitsPerPixel + " bits per pixel");
+        }
+        if (compression != BI_RGB) {
+            throw new IOException("Unsupported BMP: compression type " + compression);
+        }
+        if (header.pixelOffset < FILE_HEADER_SIZE + infoSize) {
+            throw new IOException("Invalid BMP: pixel data offset " + header.pixelOffset);
+        }
+        if (header.width <= 0 || height == 0 || height == Integer.MIN_VALUE) {
+            throw new IOException("Invalid BMP dimensions: " + header.width + "x" + height);
+        }
+
+        // Positive height means rows are stored bottom-up
+        header.bottomUp = height > 0;
+        header.height = Math.abs(height);
+        if ((long) header.width * header.height > Integer.MAX_VALUE) {
+            throw new IOException("BMP has too many pixels: " + header.width + "x" + header.height);
+        }
+
+        long stride = (((long) header.bitsPerPixel * header.width + 31) / 32) * 4;
+        if (stride > Integer.MAX_VALUE) {
+            throw new IOException("BMP row too wide: " + header.width + " pixels");
+        }
+        header.rowStride = (int) stride;
+        return header;
+    }
+
+    private static final class Header {
+        int pixelOffset;
+        int width;
+        int height;
+        int bitsPerPixel;
+        int rowStride;
+        boolean bottomUp;
+    }
+}
@@ -0,0 +1,225 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.zip.Checksum;
+
+// Pixel access by linear index (y * width + x) with the same packed 0xAARRGGBB
+// values as BufferedImage.getRGB/setRGB. TYPE_INT_RGB, TYPE_INT_ARGB and
+// TYPE_3BYTE_BGR images are read and written straight from their backing
+// arrays; any other layout falls back to the BufferedImage calls.
+public abstract class PixelRaster {
+
+    protected final int width;
+    protected final int height;
+
+    protected PixelRaster(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public static PixelRaster of(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        boolean untranslated = raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0
+                && raster.getDataBuffer().getNumBanks() == 1
+                && raster.getDataBuffer().getOffset() == 0;
+
+        if (untranslated) {
+            int type = image.getType();
+            SampleModel model = raster.getSampleModel();
+
+            if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                    && model instanceof SinglePixelPackedSampleModel packed
+                    && packed.getScanlineStride() == image.getWidth()) {
+                int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+                return new IntRaster(image.getWidth(), image.getHeight(), data,
+                        type == BufferedImage.TYPE_INT_ARGB);
+            }
+
+            if (type == BufferedImage.TYPE_3BYTE_BGR
+                    && model instanceof ComponentSampleModel component
+                    && component.getPixelStride() == 3
+                    && component.getScanlineStride() == image.getWidth() * 3
+                    && raster.getDataBuffer().getDataType() == DataBuffer.TYPE_BYTE) {
+                byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                int[] offsets = component.getBandOffsets();
+                if (offsets[0] == 2 && offsets[1] == 1 && offsets[2] == 0) {
+                    return new ByteBgrRaster(image.getWidth(), image.getHeight(), data);
+                }
+            }
+        }
+
+        return new ImageRaster(image);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTotalPixels() {
+        return width * height;
+    }
+
+    public abstract int getRGB(int index);
+
+    public abstract void setRGB(int index, int rgb);
+
+    // Copy len packed pixels starting at index into dst
+    public void getRGB(int index, int[] dst, int offset, int len) {
+        for (int i = 0; i < len; i++) {
+            dst[offset + i] = getRGB(index + i);
+        }
+    }
+
+    // Write len packed pixels from src starting at index
+    public void setRGB(int index, int[] src, int offset, int len) {
+        for (int i = 0; i < len; i++) {
+            setRGB(index + i, src[offset + i]);
+        }
+    }
+
+    // Feed every pixel into checksum as blue, green, red bytes (BMP order), row by row,
+    // and return its value. Gives a cheap integrity tag for a whole pixel payload.
+    public long checksum(Checksum checksum) {
+        int[] row = new int[width];
+        byte[] bytes = new byte[width * 3];
+        for (int y = 0; y < height; y++) {
+            getRGB(y * width, row, 0, width);
+            for (int x = 0, p = 0; x < width; x++, p += 3) {
+                int rgb = row[x];
+                bytes[p] = (byte) rgb;
+                bytes[p + 1] = (byte) (rgb >> 8);
+                bytes[p + 2] = (byte) (rgb >> 16);
+            }
+            checksum.update(bytes, 0, bytes.length);
+        }
+        return checksum.getValue();
+    }
+
+    // TYPE_INT_RGB / TYPE_INT_ARGB: one int per pixel
+    private static final class IntRaster extends PixelRaster {
+        private final int[] data;
+        private final int alphaMask;
+        private final int opaqueBits;
+
+        IntRaster(int width, int height, int[] data, boolean hasAlpha) {
+            super(width, height);
+            this.data = data;
+            this.alphaMask = hasAlpha ? 0xFFFFFFFF : 0x00FFFFFF;
+            this.opaqueBits = hasAlpha ? 0 : 0xFF000000;
+        }
+
+        @Override
+        public int getRGB(int index) {
+            return data[index] | opaqueBits;
+        }
+
+        @Override
+        public void setRGB(int index, int rgb) {
+            data[index] = rgb & alphaMask;
+        }
+
+        @Override
+        public void getRGB(int index, int[] dst, int offset, int len) {
+            if (opaqueBits == 0) {
+                System.arraycopy(data, index, dst, offset, len);
+                return;
+            }
+            for (int i = 0; i < len; i++) {
+                dst[offset + i] = data[index + i] | opaqueBits;
+            }
+        }
+
+        @Override
+        public void setRGB(int index, int[] src, int offset, int len) {
+            for (int i = 0; i < len; i++) {
+                data[index + i] = src[offset + i] & alphaMask;
+            }
+        }
+    }
+
+    // TYPE_3BYTE_BGR: blue, green, red bytes per pixel
+    private static final class ByteBgrRaster extends PixelRaster {
+        private final byte[] data;
+
+        ByteBgrRaster(int width, int height, byte[] data) {
+            super(width, height);
+            this.data = data;
+        }
+
+        @Override
+        public int getRGB(int index) {
+            int p = index * 3;
+            return 0xFF000000
+                    | (data[p + 2] & 0xFF) << 16
+                    | (data[p + 1] & 0xFF) << 8
+                    | (data[p] & 0xFF);
+        }
+
+        @Override
+        public void setRGB(int index, int rgb) {
+            int p = index * 3;
+            data[p] = (byte) rgb;
+            data[p + 1] = (byte) (rgb >> 8);
+            data[p + 2] = (byte) (rgb >> 16);
+        }
+
+        @Override
+        public void getRGB(int index, int[] dst, int offset, int len) {
+            int p = index * 3;
+            for (int i = 0; i < len; i++, p += 3) {
+                dst[offset + i] = 0xFF000000
+                        | (data[p + 2] & 0xFF) << 16
+                        | (data[p + 1] & 0xFF) << 8
+                        | (data[p] & 0xFF);
+            }
+        }
+
+        @Override
+        public void setRGB(int index, int[] src, int offset, int len) {
+            int p = index * 3;
+            for (int i = 0; i < len; i++, p += 3) {
+                int rgb = src[offset + i];
+                data[p] = (byte) rgb;
+                data[p + 1] = (byte) (rgb >> 8);
+                data[p + 2] = (byte) (rgb >> 16);
+            }
+        }
+
+        @Override
+        public long checksum(Checksum checksum) {
+            // The backing array is already in blue, green, red order
+            checksum.update(data, 0, width * height * 3);
+            return checksum.getValue();
+        }
+    }
+
+    // Any other image type goes through the ColorModel
+    private static final class ImageRaster extends PixelRaster {
+        private final BufferedImage image;
+
+        ImageRaster(BufferedImage image) {
+            super(image.getWidth(), image.getHeight());
+            this.image = image;
+        }
+
+        @Override
+        public int getRGB(int index) {
+            return image.getRGB(index % width, index / width);
+        }
+
+        @Override
+        public void setRGB(int index, int rgb) {
+            image.setRGB(index % width, index / width, rgb);
+        }
+    }
+}
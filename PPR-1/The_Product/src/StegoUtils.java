@@ -2,93 +2,94 @@ import java.awt.image.BufferedImage;
 
 public class StegoUtils {
 
+    public static final String WRONG_PASSWORD = "Wrong password or watermark not found.";
+    public static final String NOT_FOUND = "Watermark not found.";
+
+    // "@@" header plus "#@" terminator
+    private static final int MARKER_LENGTH = 4;
+
     public static BufferedImage embedWatermark(BufferedImage image, String watermark, String password) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        int totalPixels = width * height;
+        embedWatermark(PixelRaster.of(image), watermark, password);
+        return image;
+    }
 
-        byte[] hash = HashUtils.getSHA256Hash(password);
-        int crc = HashUtils.getCRC8(hash);
-        int step = crc + 1;
+    public static String extractWatermark(BufferedImage image, String password) {
+        return extractWatermark(PixelRaster.of(image), password);
+    }
 
-        String fullWatermark = "@@" + watermark + "#@";
+    public static void embedWatermark(PixelRaster raster, String watermark, String password) {
+        embedWatermark(raster, watermark, KeySchedule.forStego(password));
+    }
 
-        int pixelIndex = 0;
-        for (int i = 0; i < fullWatermark.length(); i++) {
-            char c = fullWatermark.charAt(i);
-            int ascii = (int) c;
-            String binary = String.format("%8s", Integer.toBinaryString(ascii)).replace(' ', '0');
+    public static String extractWatermark(PixelRaster raster, String password) {
+        return extractWatermark(raster, KeySchedule.forStego(password));
+    }
 
-            if (pixelIndex >= totalPixels) {
-                throw new RuntimeException("Watermark too long for image.");
-            }
+    // Same as the password overloads, with the hop parameters already derived (see KeySchedule)
+    public static void embedWatermark(PixelRaster raster, String watermark, KeySchedule key) {
+        int step = key.getStep();
 
-            int x = pixelIndex % width;
-            int y = pixelIndex / width;
+        String fullWatermark = "@@" + watermark + "#@";
 
-            int rgb = image.getRGB(x, y);
-            int red = (rgb >> 16) & 0xFF;
-            int green = (rgb >> 8) & 0xFF;
-            int blue = rgb & 0xFF;
+        // Reject before touching any pixel rather than leaving a half-written watermark behind
+        long pixelsFromBase = Math.max(0, (long) raster.getTotalPixels() - key.getBaseOffset());
+        if (fullWatermark.length() > hopPositions(pixelsFromBase, step)) {
+            throw new RuntimeException("Watermark too long for image.");
+        }
 
-            red = (red & 0b11111000) | Integer.parseInt(binary.substring(0, 3), 2);
-            green = (green & 0b11111000) | Integer.parseInt(binary.substring(3, 6), 2);
-            blue = (blue & 0b11111100) | Integer.parseInt(binary.substring(6, 8), 2);
+        int pixelIndex = key.getBaseOffset();
+        for (int i = 0; i < fullWatermark.length(); i++) {
+            int ascii = fullWatermark.charAt(i) & 0xFF;
 
-            int newRgb = (red << 16) | (green << 8) | blue;
-            image.setRGB(x, y, (0xFF << 24) | newRgb);
+            int rgb = raster.getRGB(pixelIndex);
+            raster.setRGB(pixelIndex, (0xFF << 24) | LsbKernel.embed(rgb, ascii));
 
             pixelIndex += step;
         }
-
-        return image;
     }
 
-    public static String extractWatermark(BufferedImage image, String password) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        int totalPixels = width * height;
-
-        byte[] hash = HashUtils.getSHA256Hash(password);
-        int crc = HashUtils.getCRC8(hash);
-        int step = crc + 1;
+    public static String extractWatermark(PixelRaster raster, KeySchedule key) {
+        int totalPixels = raster.getTotalPixels();
+        int step = key.getStep();
 
-        StringBuilder watermarkBuilder = new StringBuilder();
-        int pixelIndex = 0;
+        WatermarkScanner scanner = new WatermarkScanner();
+        int pixelIndex = key.getBaseOffset();
 
         while (pixelIndex < totalPixels) {
-            int x = pixelIndex % width;
-            int y = pixelIndex / width;
-
-            int rgb = image.getRGB(x, y);
-            int red = (rgb >> 16) & 0xFF;
-            int green = (rgb >> 8) & 0xFF;
-            int blue = rgb & 0xFF;
+            int state = scanner.accept(LsbKernel.extract(raster.getRGB(pixelIndex)));
 
-            String binary =
-                    String.format("%3s", Integer.toBinaryString(red & 0b00000111)).replace(' ', '0') +
-                            String.format("%3s", Integer.toBinaryString(green & 0b00000111)).replace(' ', '0') +
-                            String.format("%2s", Integer.toBinaryString(blue & 0b00000011)).replace(' ', '0');
-
-            int ascii = Integer.parseInt(binary, 2);
-            char c = (char) ascii;
-            watermarkBuilder.append(c);
-
-            String result = watermarkBuilder.toString();
-
-            if (result.startsWith("@@") && result.contains("#@")) {
-                int start = result.indexOf("@@") + 2;
-                int end = result.indexOf("#@");
-                return result.substring(start, end);
+            if (state == WatermarkScanner.FOUND) {
+                return scanner.watermark();
             }
 
-            if (watermarkBuilder.length() > 4 && !result.startsWith("@@")) {
-                return "Wrong password or watermark not found.";
+            if (state == WatermarkScanner.REJECTED) {
+                // A bad header is reported as a wrong password once five characters fit on the hop path
+                return (long) 4 * step < totalPixels ? WRONG_PASSWORD : NOT_FOUND;
             }
 
             pixelIndex += step;
         }
 
-        return "Watermark not found.";
+        return NOT_FOUND;
+    }
+
+    // Pixel hop used for a password: CRC-8 of its SHA-256 hash, plus one
+    public static int getStep(String password) {
+        return KeySchedule.forStego(password).getStep();
+    }
+
+    // Longest watermark (in characters) that fits in a width x height image with the given step.
+    // Pure arithmetic, so it can be asked before any pixel of a large image is read.
+    public static int capacity(int width, int height, int step) {
+        return (int) Math.max(0, hopPositions((long) width * height, step) - MARKER_LENGTH);
+    }
+
+    public static int capacity(BufferedImage image, String password) {
+        return capacity(image.getWidth(), image.getHeight(), getStep(password));
+    }
+
+    // Hops 0, step, 2 * step, ... that lie within the given number of pixels
+    private static long hopPositions(long pixels, int step) {
+        return (pixels + step - 1) / step;
     }
 }
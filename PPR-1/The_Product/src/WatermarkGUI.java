@@ -11,6 +11,9 @@ public class WatermarkGUI extends JFrame {
     private JTextField watermarkField;
     private JPasswordField passwordField;
 
+    // Disabled while an embed, extract or save runs in the background
+    private JButton[] actionButtons;
+
     public WatermarkGUI() {
         setTitle("Java Digital Watermarking (BMP Only)");
         setSize(800, 600);
@@ -23,7 +26,7 @@ public class WatermarkGUI extends JFrame {
 
         JPanel controlPanel = new JPanel(new GridLayout(6, 1, 5, 5));
 
-        JButton loadButton = new JButton("Load BMP (256x256)");
+        JButton loadButton = new JButton("Load BMP");
         loadButton.addActionListener(e -> loadImage());
         controlPanel.add(loadButton);
 
@@ -46,24 +49,22 @@ public class WatermarkGUI extends JFrame {
         extractButton.addActionListener(e -> extractWatermark());
         buttons.add(extractButton);
 
+        actionButtons = new JButton[] { loadButton, embedButton, extractButton };
+
         controlPanel.add(buttons);
         add(controlPanel, BorderLayout.SOUTH);
     }
 
     private void loadImage() {
         JFileChooser chooser = new JFileChooser();
-        chooser.setDialogTitle("Select 256x256 BMP Image");
+        chooser.setDialogTitle("Select BMP Image");
         int result = chooser.showOpenDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
             File selected = chooser.getSelectedFile();
             try {
                 BufferedImage img = ImageIO.read(selected);
-                if (img.getWidth() != 256 || img.getHeight() != 256) {
-                    JOptionPane.showMessageDialog(this, "Image must be 256x256 pixels.", "Error", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
                 loadedImage = img;
-                imageLabel.setIcon(new ImageIcon(loadedImage));
+                imageLabel.setIcon(previewIcon(loadedImage));
                 imageLabel.setText("");
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "Failed to load image.", "Error", JOptionPane.ERROR_MESSAGE);
@@ -90,29 +91,72 @@ public class WatermarkGUI extends JFrame {
             return;
         }
 
-        try {
-            BufferedImage result = StegoUtils.embedWatermark(loadedImage, watermark, password);
+        int capacity = StegoUtils.capacity(loadedImage, password);
+        if (watermark.length() > capacity) {
+            JOptionPane.showMessageDialog(this, "Watermark too long for this image and password (max " + capacity
+                    + " characters).", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        // Embed into a copy so a cancelled run leaves the loaded image untouched
+        BufferedImage image = loadedImage;
+        new BackgroundTask<BufferedImage>(this, "Embedding watermark") {
+            @Override
+            protected BufferedImage work() {
+                step(0, "Copying image...");
+                BufferedImage copy = copyOf(image);
+                step(50, "Embedding watermark...");
+                return StegoUtils.embedWatermark(copy, watermark, password);
+            }
 
-            JFileChooser saver = new JFileChooser();
-            saver.setDialogTitle("Save Watermarked Image (BMP)");
-            int resultChoice = saver.showSaveDialog(this);
-            if (resultChoice == JFileChooser.APPROVE_OPTION) {
-                File saveFile = saver.getSelectedFile();
-                if (!saveFile.getName().toLowerCase().endsWith(".bmp")) {
-                    saveFile = new File(saveFile.getAbsolutePath() + ".bmp");
-                }
+            @Override
+            protected void succeeded(BufferedImage result) {
+                loadedImage = result;
+                saveWatermarked(result);
+            }
+
+            @Override
+            protected void failed(Throwable error) {
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(WatermarkGUI.this, "Error embedding watermark.", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }.start(actionButtons);
+    }
+
+    private void saveWatermarked(BufferedImage result) {
+        JFileChooser saver = new JFileChooser();
+        saver.setDialogTitle("Save Watermarked Image (BMP)");
+        int resultChoice = saver.showSaveDialog(this);
+        if (resultChoice != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        File chosen = saver.getSelectedFile();
+        File saveFile = chosen.getName().toLowerCase().endsWith(".bmp")
+                ? chosen : new File(chosen.getAbsolutePath() + ".bmp");
 
-                boolean success = ImageIO.write(result, "bmp", saveFile);
+        new BackgroundTask<Boolean>(this, "Saving image") {
+            @Override
+            protected Boolean work() throws Exception {
+                step(0, "Writing " + saveFile.getName() + "...");
+                return ImageIO.write(result, "bmp", saveFile);
+            }
+
+            @Override
+            protected void succeeded(Boolean success) {
                 if (success) {
-                    JOptionPane.showMessageDialog(this, "Watermark embedded and saved as BMP.", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    JOptionPane.showMessageDialog(WatermarkGUI.this, "Watermark embedded and saved as BMP.", "Success", JOptionPane.INFORMATION_MESSAGE);
                 } else {
-                    JOptionPane.showMessageDialog(this, "Failed to save BMP image (writer missing).", "Error", JOptionPane.ERROR_MESSAGE);
+                    JOptionPane.showMessageDialog(WatermarkGUI.this, "Failed to save BMP image (writer missing).", "Error", JOptionPane.ERROR_MESSAGE);
                 }
             }
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error embedding watermark.", "Error", JOptionPane.ERROR_MESSAGE);
-        }
+
+            @Override
+            protected void failed(Throwable error) {
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(WatermarkGUI.this, "Error embedding watermark.", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }.start(actionButtons);
     }
 
     private void extractWatermark() {
@@ -127,13 +171,47 @@ public class WatermarkGUI extends JFrame {
             return;
         }
 
-        try {
-            String extracted = StegoUtils.extractWatermark(loadedImage, password);
-            JOptionPane.showMessageDialog(this, "Extracted Watermark:\n" + extracted, "Result", JOptionPane.INFORMATION_MESSAGE);
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error extracting watermark.", "Error", JOptionPane.ERROR_MESSAGE);
+        BufferedImage image = loadedImage;
+        new BackgroundTask<String>(this, "Extracting watermark") {
+            @Override
+            protected String work() {
+                step(0, "Reading watermark...");
+                return StegoUtils.extractWatermark(image, password);
+            }
+
+            @Override
+            protected void succeeded(String extracted) {
+                JOptionPane.showMessageDialog(WatermarkGUI.this, "Extracted Watermark:\n" + extracted, "Result", JOptionPane.INFORMATION_MESSAGE);
+            }
+
+            @Override
+            protected void failed(Throwable error) {
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(WatermarkGUI.this, "Error extracting watermark.", "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }.start(actionButtons);
+    }
+
+    // Same pixels and layout, in a separate buffer
+    private static BufferedImage copyOf(BufferedImage image) {
+        return new BufferedImage(image.getColorModel(), image.copyData(null), image.isAlphaPremultiplied(), null);
+    }
+
+    // Scale the image down to fit the 256x256 preview area, keeping its aspect ratio
+    private static ImageIcon previewIcon(BufferedImage image) {
+        double scale = Math.min(1.0, 256.0 / Math.max(image.getWidth(), image.getHeight()));
+        if (scale == 1.0) {
+            return new ImageIcon(image);
         }
+
+        int w = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int h = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage preview = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = preview.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(image, 0, 0, w, h, null);
+        g2d.dispose();
+        return new ImageIcon(preview);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,52 @@
+// Incremental parser for the "@@" + watermark + "#@" frame used by StegoUtils.
+// Bytes are fed one at a time as they are pulled off the hop path; the header
+// is checked as soon as it arrives and the terminator is found without ever
+// re-reading what has already been decoded.
+final class WatermarkScanner {
+
+    static final int MORE = 0;
+    static final int FOUND = 1;
+    static final int REJECTED = 2;
+
+    private static final int HEADER_LENGTH = 2;
+
+    private final StringBuilder body = new StringBuilder();
+    private int headerSeen;
+    private boolean lastWasHash;
+    private int state = MORE;
+
+    // Feed the next decoded byte and return the scanner state
+    int accept(int value) {
+        if (state != MORE) {
+            return state;
+        }
+
+        if (headerSeen < HEADER_LENGTH) {
+            if (value != '@') {
+                state = REJECTED;
+            } else {
+                headerSeen++;
+            }
+            return state;
+        }
+
+        if (lastWasHash && value == '@') {
+            body.setLength(body.length() - 1);
+            state = FOUND;
+            return state;
+        }
+
+        body.append((char) value);
+        lastWasHash = value == '#';
+        return state;
+    }
+
+    int state() {
+        return state;
+    }
+
+    // The watermark between the markers, valid once FOUND
+    String watermark() {
+        return body.toString();
+    }
+}
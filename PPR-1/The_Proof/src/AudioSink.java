@@ -0,0 +1,59 @@
+import javax.sound.sampled.SourceDataLine;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// Destination for the blocks of interleaved little-endian samples LiveWatermarker
+// produces: a sound card line, a file, or TimingSink for measuring without either.
+// write() consumes the whole block and may block until there is room for it;
+// close() lets what is already queued play out first.
+public interface AudioSink extends Closeable {
+
+    void write(ByteBuffer block) throws IOException;
+
+    // The line must be open and started in the stream's format; closing drains and closes it
+    static AudioSink of(SourceDataLine line) {
+        return new AudioSink() {
+            private byte[] scratch = new byte[0];
+
+            @Override
+            public void write(ByteBuffer block) {
+                int length = block.remaining();
+                if (block.hasArray()) {
+                    line.write(block.array(), block.arrayOffset() + block.position(), length);
+                } else {
+                    if (scratch.length < length) {
+                        scratch = new byte[length];
+                    }
+                    block.duplicate().get(scratch, 0, length);
+                    line.write(scratch, 0, length);
+                }
+                block.position(block.limit());
+            }
+
+            @Override
+            public void close() {
+                line.drain();
+                line.close();
+            }
+        };
+    }
+
+    // Closing closes the channel
+    static AudioSink of(WritableByteChannel channel) {
+        return new AudioSink() {
+            @Override
+            public void write(ByteBuffer block) throws IOException {
+                while (block.hasRemaining()) {
+                    channel.write(block);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// The check behind AudioWatermark's "Extract & Verify", without the UI: walk the
+// LSB hop path for the expected watermark, then split what comes back into
+// watermark and timestamp at the end marker and compare.
+public final class AudioVerification {
+
+    public static final int MAX_WATERMARK_LENGTH = 16;
+
+    private final String extracted;
+    private final String watermark;
+    private final String timestamp;
+    private final boolean match;
+
+    private AudioVerification(String extracted, String watermark, String timestamp, boolean match) {
+        this.extracted = extracted;
+        this.watermark = watermark;
+        this.timestamp = timestamp;
+        this.match = match;
+    }
+
+    // Throws IllegalArgumentException for an empty or overlong watermark or a sample format NibbleCodec
+    // cannot read
+    public static AudioVerification verify(WavFile wav, String expectedWatermark) throws IOException {
+        if (expectedWatermark.isEmpty()) {
+            throw new IllegalArgumentException("Expected watermark cannot be empty");
+        }
+        if (expectedWatermark.length() > MAX_WATERMARK_LENGTH) {
+            throw new IllegalArgumentException("Watermark must be " + MAX_WATERMARK_LENGTH + " characters or less");
+        }
+
+        // Same 2 GB window at the start of the data chunk that AudioWatermark maps
+        long window = Math.min(wav.getDataSize(), Integer.MAX_VALUE - Integer.MAX_VALUE % wav.getBlockAlign());
+        ByteBuffer samples = wav.samples(0, (int) window);
+        NibbleCodec codec = NibbleCodec.of(samples, wav);
+        int totalFrames = (int) Math.min(Integer.MAX_VALUE, wav.getFrameCount());
+        if (totalFrames == 0 || codec.getAddressableFrames() == 0) {
+            throw new IllegalArgumentException("The data chunk holds no audio frames");
+        }
+
+        int baseOffset = KeySchedule.forAudio(expectedWatermark).getBaseOffset();
+        String extracted = new AudioWatermarkEngine().extract(codec, totalFrames, expectedWatermark, baseOffset);
+        return of(extracted, expectedWatermark);
+    }
+
+    // Splits a raw extracted string, as AudioWatermarkEngine.extract returns it
+    public static AudioVerification of(String extracted, String expectedWatermark) {
+        if (!extracted.endsWith(AudioWatermarkEngine.END_MARKER)) {
+            return new AudioVerification(extracted, null, null, false);
+        }
+        String content = extracted.substring(0, extracted.length() - AudioWatermarkEngine.END_MARKER.length());
+        if (content.length() < expectedWatermark.length()) {
+            return new AudioVerification(extracted, null, null, false);
+        }
+        String watermark = content.substring(0, expectedWatermark.length());
+        return new AudioVerification(extracted, watermark, content.substring(expectedWatermark.length()),
+                watermark.equals(expectedWatermark));
+    }
+
+    // Everything read off the hop path, end marker included when there was one
+    public String getExtracted() {
+        return extracted;
+    }
+
+    public boolean isMarkerFound() {
+        return extracted.endsWith(AudioWatermarkEngine.END_MARKER);
+    }
+
+    // The leading characters as long as the expected watermark; null without a marker or when too short
+    public String getWatermark() {
+        return watermark;
+    }
+
+    // What follows the watermark up to the marker; null when getWatermark() is
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean isMatch() {
+        return match;
+    }
+}
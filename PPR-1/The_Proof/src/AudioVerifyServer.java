@@ -0,0 +1,425 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless AudioWatermark verification over HTTP, for checking many WAVs without
+// the Swing UI. Binds to localhost only; every request runs on its own virtual
+// thread.
+//
+//   java AudioVerifyServer [--port N]
+//
+//   POST /verify?watermark=W&path=/a.wav&path=/b.wav   verify files on this machine
+//   POST /verify?watermark=W   (body: the WAV file)    verify an upload
+//   GET  /metrics                                      Prometheus text format
+//
+// /verify answers {"results": [...]} with one object per file: the extracted
+// watermark and timestamp and whether it matched, or the error for that file.
+// A bad request (no watermark, neither paths nor body) gets a 400 with {"error": ...}.
+//
+// Web pages must not be able to make a browser probe local paths through it:
+// /verify takes POST only, a request naming paths needs a Content-Type a form
+// cannot send (e.g. application/json, so a cross-origin page gets a preflight
+// it fails), and any Host but a loopback address is refused, against DNS
+// rebinding.
+//
+//   curl -X POST -H 'Content-Type: application/json' 'http://127.0.0.1:8765/verify?watermark=W&path=/a.wav'
+public class AudioVerifyServer {
+
+    public static final int DEFAULT_PORT = 8765;
+
+    // Uploads are spilled to a temp file so WavFile can map them; larger ones are refused
+    private static final long MAX_UPLOAD_BYTES = 1L << 30;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final LatencyHistogram verifyLatency = new LatencyHistogram();
+    private final LatencyHistogram metricsLatency = new LatencyHistogram();
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder mismatched = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder badRequests = new LongAdder();
+    private final LongAdder forbidden = new LongAdder();
+    private final LongAdder wrongMethod = new LongAdder();
+    private final LongAdder wrongType = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+
+    public AudioVerifyServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/verify", exchange -> handle(exchange, verifyLatency, this::verify));
+        server.createContext("/metrics", exchange -> handle(exchange, metricsLatency, this::metrics));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    // Port actually bound; differs from the one asked for when that was 0
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, LatencyHistogram latency, Handler handler) {
+        long start = System.nanoTime();
+        try {
+            if (!isLoopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+                forbidden.increment();
+                respond(exchange, 403, "application/json", error("Host must be a loopback address"));
+                return;
+            }
+            handler.handle(exchange);
+        } catch (IOException | RuntimeException ex) {
+            // Once the headers are out the response is half sent and there is nothing more to tell
+            // the client; before that, the failure is ours and it gets a 500
+            if (exchange.getResponseCode() < 0) {
+                serverErrors.increment();
+                String reason = ex.getClass().getSimpleName() + (ex.getMessage() != null ? ": " + ex.getMessage() : "");
+                try {
+                    respond(exchange, 500, "application/json", error(reason));
+                } catch (IOException | RuntimeException ignored) {
+                    // The client is gone
+                }
+            }
+        } finally {
+            exchange.close();
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void verify(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            wrongMethod.increment();
+            exchange.getResponseHeaders().set("Allow", "POST");
+            respond(exchange, 405, "application/json", error("Use POST"));
+            return;
+        }
+
+        List<String> watermarks = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+                if (name.equals("watermark")) {
+                    watermarks.add(value);
+                } else if (name.equals("path")) {
+                    paths.add(value);
+                }
+            }
+        }
+
+        if (watermarks.size() != 1 || watermarks.get(0).isEmpty()) {
+            badRequest(exchange, "Give exactly one non-empty watermark parameter");
+            return;
+        }
+        String watermark = watermarks.get(0);
+        if (watermark.length() > AudioVerification.MAX_WATERMARK_LENGTH) {
+            badRequest(exchange, "Watermark must be " + AudioVerification.MAX_WATERMARK_LENGTH
+                    + " characters or less");
+            return;
+        }
+
+        if (!paths.isEmpty() && isSimpleContentType(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+            wrongType.increment();
+            respond(exchange, 415, "application/json",
+                    error("Requests naming paths need a Content-Type such as application/json"));
+            return;
+        }
+
+        StringBuilder json = new StringBuilder("{\"results\":[");
+        if (!paths.isEmpty()) {
+            for (int i = 0; i < paths.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                result(json, paths.get(i), Paths.get(paths.get(i)), watermark);
+            }
+        } else {
+            Path upload = Files.createTempFile("verify", ".wav");
+            try {
+                long size = spill(exchange.getRequestBody(), upload);
+                if (size == 0) {
+                    badRequest(exchange, "Give path parameters or a WAV file as the request body");
+                    return;
+                }
+                if (size < 0) {
+                    badRequest(exchange, "Upload is larger than " + MAX_UPLOAD_BYTES + " bytes");
+                    return;
+                }
+                result(json, null, upload, watermark);
+            } finally {
+                deleteUpload(upload);
+            }
+        }
+        json.append("]}");
+        respond(exchange, 200, "application/json", json.toString());
+    }
+
+    // One file's result object; errors in the file itself are reported there, not as an HTTP status
+    private void result(StringBuilder json, String name, Path file, String watermark) {
+        json.append('{');
+        if (name != null) {
+            json.append("\"path\":").append(quote(name)).append(',');
+        }
+        long start = System.nanoTime();
+        try (WavFile wav = WavFile.open(file)) {
+            AudioVerification result = AudioVerification.verify(wav, watermark);
+            json.append("\"markerFound\":").append(result.isMarkerFound())
+                    .append(",\"watermark\":").append(quote(result.getWatermark()))
+                    .append(",\"timestamp\":").append(quote(result.getTimestamp()))
+                    .append(",\"match\":").append(result.isMatch());
+            (result.isMatch() ? matched : result.isMarkerFound() ? mismatched : notFound).increment();
+        } catch (IOException | RuntimeException ex) {
+            failed.increment();
+            String reason = ex instanceof NoSuchFileException ? "No such file"
+                    : ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName();
+            json.append("\"error\":").append(quote(reason));
+        }
+        json.append(String.format(Locale.ROOT, ",\"millis\":%.3f}", (System.nanoTime() - start) / 1e6));
+    }
+
+    // Windows refuses to delete a file while a mapping of it is still reachable, which can
+    // outlive the WavFile until the next GC; the answer is ready by now, so that is only
+    // logged and the file left for the JVM to delete on exit
+    private static void deleteUpload(Path upload) {
+        try {
+            Files.deleteIfExists(upload);
+        } catch (IOException ex) {
+            System.err.println("Could not delete the upload " + upload + " (" + ex + "), deleting it on exit");
+            upload.toFile().deleteOnExit();
+        }
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        StringBuilder text = new StringBuilder();
+        text.append("# HELP audio_verify_request_seconds Time to answer a request, by endpoint\n");
+        text.append("# TYPE audio_verify_request_seconds histogram\n");
+        verifyLatency.appendTo(text, "audio_verify_request_seconds", "endpoint=\"verify\"");
+        metricsLatency.appendTo(text, "audio_verify_request_seconds", "endpoint=\"metrics\"");
+
+        text.append("# HELP audio_verify_files_total Files checked, by outcome\n");
+        text.append("# TYPE audio_verify_files_total counter\n");
+        text.append("audio_verify_files_total{result=\"match\"} ").append(matched.sum()).append('\n');
+        text.append("audio_verify_files_total{result=\"mismatch\"} ").append(mismatched.sum()).append('\n');
+        text.append("audio_verify_files_total{result=\"not_found\"} ").append(notFound.sum()).append('\n');
+        text.append("audio_verify_files_total{result=\"error\"} ").append(failed.sum()).append('\n');
+
+        text.append("# HELP audio_verify_refused_requests_total Requests refused, by status\n");
+        text.append("# TYPE audio_verify_refused_requests_total counter\n");
+        text.append("audio_verify_refused_requests_total{status=\"400\"} ").append(badRequests.sum()).append('\n');
+        text.append("audio_verify_refused_requests_total{status=\"403\"} ").append(forbidden.sum()).append('\n');
+        text.append("audio_verify_refused_requests_total{status=\"405\"} ").append(wrongMethod.sum()).append('\n');
+        text.append("audio_verify_refused_requests_total{status=\"415\"} ").append(wrongType.sum()).append('\n');
+
+        text.append("# HELP audio_verify_server_errors_total Requests that failed with 500\n");
+        text.append("# TYPE audio_verify_server_errors_total counter\n");
+        text.append("audio_verify_server_errors_total ").append(serverErrors.sum()).append('\n');
+
+        respond(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", text.toString());
+    }
+
+    private void badRequest(HttpExchange exchange, String reason) throws IOException {
+        badRequests.increment();
+        respond(exchange, 400, "application/json", error(reason));
+    }
+
+    // Host header naming this machine by a loopback literal or "localhost", with or without a port.
+    // Names are not resolved: a rebinding attack controls what they resolve to.
+    private static boolean isLoopbackHost(String host) {
+        if (host == null) {
+            return false;
+        }
+        String name = host.trim().toLowerCase(Locale.ROOT);
+        if (name.startsWith("[")) {
+            int close = name.indexOf(']');
+            if (close < 0 || (close + 1 < name.length() && name.charAt(close + 1) != ':')) {
+                return false;
+            }
+            return name.substring(1, close).equals("::1");
+        }
+        int colon = name.indexOf(':');
+        if (colon >= 0) {
+            name = name.substring(0, colon);
+        }
+        if (name.equals("localhost")) {
+            return true;
+        }
+        String[] octets = name.split("\\.", -1);
+        if (octets.length != 4 || !octets[0].equals("127")) {
+            return false;
+        }
+        for (String octet : octets) {
+            if (octet.isEmpty() || octet.length() > 3 || !octet.chars().allMatch(Character::isDigit)
+                    || Integer.parseInt(octet) > 255) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Missing, or one a cross-origin form or fetch can send without a CORS preflight
+    private static boolean isSimpleContentType(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        int semicolon = contentType.indexOf(';');
+        String type = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim()
+                .toLowerCase(Locale.ROOT);
+        return type.isEmpty() || type.equals("application/x-www-form-urlencoded")
+                || type.equals("multipart/form-data") || type.equals("text/plain");
+    }
+
+    // Bytes copied, or -1 once past MAX_UPLOAD_BYTES
+    private static long spill(InputStream body, Path file) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            int n;
+            while ((n = body.read(buffer)) > 0) {
+                total += n;
+                if (total > MAX_UPLOAD_BYTES) {
+                    return -1;
+                }
+                out.write(buffer, 0, n);
+            }
+        }
+        return total;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String error(String reason) {
+        return "{\"error\":" + quote(reason) + "}";
+    }
+
+    // JSON string literal, or null
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // Cumulative latency buckets in seconds, lock-free so every virtual thread can record at once
+    private static final class LatencyHistogram {
+        private static final double[] BOUNDS = {
+                0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+        };
+
+        private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        LatencyHistogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            double seconds = nanos / 1e9;
+            int i = 0;
+            while (i < BOUNDS.length && seconds > BOUNDS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            count.increment();
+            totalNanos.add(nanos);
+        }
+
+        void appendTo(StringBuilder text, String name, String labels) {
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i].sum();
+                String le = i < BOUNDS.length ? BigDecimal.valueOf(BOUNDS[i]).stripTrailingZeros().toPlainString() : "+Inf";
+                text.append(name).append("_bucket{").append(labels).append(",le=\"").append(le).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            text.append(name).append("_sum{").append(labels).append("} ")
+                    .append(String.format(Locale.ROOT, "%.6f", totalNanos.sum() / 1e9)).append('\n');
+            text.append(name).append("_count{").append(labels).append("} ").append(count.sum()).append('\n');
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java AudioVerifyServer [--port N]");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                try {
+                    port = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException ex) {
+                    usage();
+                }
+            } else {
+                usage();
+            }
+        }
+
+        AudioVerifyServer service = new AudioVerifyServer(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(service::stop));
+        service.start();
+        System.out.println("Listening on http://127.0.0.1:" + service.getPort() + "/verify and /metrics");
+    }
+}
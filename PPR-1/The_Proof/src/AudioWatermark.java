@@ -1,3 +1,7 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import javax.swing.filechooser.FileNameExtensionFilter;
@@ -6,18 +10,30 @@ import java.awt.event.ActionEvent;
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.channels.ReadableByteChannel;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 public class AudioWatermark extends JFrame {
-    private JTextField watermarkField;
+    // Samples kept for the step-by-step log of one embed or extract
+    private static final int TRACE_CAPACITY = 256;
+
+    // Sound card buffer, in LiveWatermarker blocks; enough to ride out a GC pause
+    private static final int PLAYBACK_BUFFER_BLOCKS = 16;
+
+    private static final String MODE_LSB = "LSB hop path (exact, fragile)";
+    private static final String MODE_SPREAD_SPECTRUM = "Spread spectrum (robust)";
+
+    private JTextField watermarkField, keyField;
+    private JComboBox<String> modeBox;
     private JTextArea logArea;
-    private JButton embedButton, extractButton, loadAudioButton, saveAudioButton, playButton;
+    private JButton embedButton, extractButton, verifyButton, loadAudioButton, saveAudioButton, playButton;
     private JLabel statusLabel, timestampLabel, audioInfoLabel;
     private File currentAudioFile;
-    private byte[] originalAudioData, watermarkedAudioData;
+    private WavFile wavFile;
+    // Little-endian views of the data chunk: the mapped original, and an in-memory copy of its
+    // first frames - as far as the hop path reaches - with the watermark embedded
+    private ByteBuffer originalSamples, watermarkedSamples;
     private AudioInfo audioInfo;
 
     // Audio file format information
@@ -25,7 +41,7 @@ public class AudioWatermark extends JFrame {
         int sampleRate;
         int channels;
         int bitsPerSample;
-        int dataSize;
+        long dataSize;
         int totalSamples;
         
         @Override
@@ -88,6 +104,27 @@ public class AudioWatermark extends JFrame {
         timestampLabel.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
         panel.add(timestampLabel, gbc);
 
+        // Embedding mode; spread spectrum needs a key, the LSB scheme keys on the watermark itself
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("Mode:"), gbc);
+        gbc.gridx = 1;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        modeBox = new JComboBox<>(new String[] { MODE_LSB, MODE_SPREAD_SPECTRUM });
+        panel.add(modeBox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        gbc.fill = GridBagConstraints.NONE;
+        panel.add(new JLabel("Key (spread spectrum):"), gbc);
+        gbc.gridx = 1;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        keyField = new JTextField(20);
+        keyField.setEnabled(false);
+        panel.add(keyField, gbc);
+        modeBox.addActionListener(_ -> keyField.setEnabled(isSpreadSpectrum()));
+
         // Update timestamp every second
         Timer timer = new Timer(1000, _ -> timestampLabel.setText(getCurrentTimestamp()));
         timer.start();
@@ -141,6 +178,10 @@ public class AudioWatermark extends JFrame {
         extractButton.addActionListener(this::extractWatermark);
         extractButton.setEnabled(false);
 
+        verifyButton = new JButton("Verify Segments");
+        verifyButton.addActionListener(this::verifySegments);
+        verifyButton.setEnabled(false);
+
         saveAudioButton = new JButton("Save Watermarked Audio");
         saveAudioButton.addActionListener(this::saveAudio);
         saveAudioButton.setEnabled(false);
@@ -152,6 +193,7 @@ public class AudioWatermark extends JFrame {
         panel.add(loadAudioButton);
         panel.add(embedButton);
         panel.add(extractButton);
+        panel.add(verifyButton);
         panel.add(saveAudioButton);
         panel.add(playButton);
 
@@ -164,32 +206,6 @@ public class AudioWatermark extends JFrame {
         return now.format(formatter);
     }
 
-    private String calculateMD5Hash(String input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = md.digest(input.getBytes());
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("MD5 algorithm not available", e);
-        }
-    }
-
-    private int calculateXORFromHash(String hash) {
-        int result = Integer.parseInt(hash.substring(0, 2), 16); // Start with first byte
-        
-        // XOR all subsequent byte pairs
-        for (int i = 2; i < hash.length(); i += 2) {
-            int nextByte = Integer.parseInt(hash.substring(i, i + 2), 16);
-            result ^= nextByte;
-        }
-        
-        return result; // Will be 0-255
-    }
-
     private void loadAudio(ActionEvent e) {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setFileFilter(new FileNameExtensionFilter("WAV Audio Files", "wav"));
@@ -197,18 +213,13 @@ public class AudioWatermark extends JFrame {
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             try {
                 currentAudioFile = fileChooser.getSelectedFile();
-                originalAudioData = loadWAVFile(currentAudioFile);
-                
-                if (originalAudioData == null) {
-                    JOptionPane.showMessageDialog(this, "Invalid or unsupported WAV file!", 
-                        "Error", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
+                loadWAVFile(currentAudioFile);
+                long fileSize = wavFile.getFileSize();
 
                 // Display audio info
                 String infoText = "<html><center>" +
                     "<b>File:</b> " + currentAudioFile.getName() + "<br>" +
-                    "<b>Size:</b> " + (originalAudioData.length / 1024) + " KB<br>" +
+                    "<b>Size:</b> " + (fileSize / 1024) + " KB<br>" +
                     audioInfo.toString() + "<br>" +
                     "<b>Duration:</b> " + String.format("%.2f", (double)audioInfo.totalSamples / audioInfo.sampleRate) + " seconds" +
                     "</center></html>";
@@ -216,16 +227,23 @@ public class AudioWatermark extends JFrame {
 
                 embedButton.setEnabled(true);
                 extractButton.setEnabled(true);
+                verifyButton.setEnabled(true);
+                saveAudioButton.setEnabled(false);
                 playButton.setEnabled(true);
                 statusLabel.setText("Status: Audio file loaded successfully");
                 
                 log("=== AUDIO FILE LOADED ===");
                 log("File: " + currentAudioFile.getName());
-                log("File size: " + originalAudioData.length + " bytes");
+                log("File size: " + fileSize + " bytes");
+                log("Format: " + describeFormat(wavFile));
+                log("Chunks: " + wavFile.getChunks());
                 log(audioInfo.toString());
                 log("Duration: " + String.format("%.2f", (double)audioInfo.totalSamples / audioInfo.sampleRate) + " seconds");
                 log("");
 
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(this, "Invalid or unsupported WAV file!\n" + ex.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "Error loading audio: " + ex.getMessage(),
                         "Error", JOptionPane.ERROR_MESSAGE);
@@ -234,49 +252,58 @@ public class AudioWatermark extends JFrame {
         }
     }
 
-    private byte[] loadWAVFile(File file) throws IOException {
-        try (FileInputStream fis = new FileInputStream(file)) {
-            byte[] data = fis.readAllBytes();
-            
-            // Parse WAV header
-            if (data.length < 44 || !new String(data, 0, 4).equals("RIFF") || 
-                !new String(data, 8, 4).equals("WAVE")) {
-                return null;
-            }
+    // Walks the RIFF chunk headers and maps the data chunk; no sample is read here
+    private void loadWAVFile(File file) throws IOException {
+        WavFile wav = WavFile.open(file.toPath());
+        try {
+            // The hop path only reaches the first few thousand frames, so a file whose data chunk
+            // is over 2 GB (RF64) is worked on through a 2 GB window at its start
+            long window = Math.min(wav.getDataSize(), Integer.MAX_VALUE - Integer.MAX_VALUE % wav.getBlockAlign());
+            ByteBuffer samples = wav.samples(0, (int) window);
 
             // Extract audio format information
-            audioInfo = new AudioInfo();
-            ByteBuffer buffer = ByteBuffer.wrap(data);
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-            
-            buffer.position(22);
-            audioInfo.channels = buffer.getShort();
-            audioInfo.sampleRate = buffer.getInt();
-            buffer.position(34);
-            audioInfo.bitsPerSample = buffer.getShort();
-            
-            // Find data chunk
-            buffer.position(36);
-            if (!new String(data, 36, 4).equals("data")) {
-                // Look for data chunk if not at standard position
-                for (int i = 36; i < data.length - 4; i++) {
-                    if (new String(data, i, 4).equals("data")) {
-                        buffer.position(i + 4);
-                        break;
-                    }
-                }
-            } else {
-                buffer.position(40);
+            AudioInfo info = new AudioInfo();
+            info.channels = wav.getChannels();
+            info.sampleRate = wav.getSampleRate();
+            info.bitsPerSample = wav.getBitsPerSample();
+            info.dataSize = wav.getDataSize();
+            info.totalSamples = (int) Math.min(Integer.MAX_VALUE, wav.getFrameCount());
+
+            if (wavFile != null) {
+                wavFile.close();
             }
-            
-            audioInfo.dataSize = buffer.getInt();
-            audioInfo.totalSamples = audioInfo.dataSize / (audioInfo.channels * audioInfo.bitsPerSample / 8);
-            
-            return data;
+            wavFile = wav;
+            originalSamples = samples;
+            watermarkedSamples = null;
+            audioInfo = info;
+        } catch (IOException | RuntimeException ex) {
+            wav.close();
+            throw ex;
+        }
+    }
+
+    private static String describeFormat(WavFile wav) {
+        String format = wav.isFloat() ? "IEEE float"
+                : wav.getFormatTag() == WavFile.WAVE_FORMAT_PCM ? "PCM"
+                : String.format("format 0x%04X", wav.getFormatTag());
+        if (wav.isExtensible()) {
+            format += String.format(" (WAVE_FORMAT_EXTENSIBLE, %d valid bits, channel mask 0x%X)",
+                    wav.getValidBitsPerSample(), wav.getChannelMask());
         }
+        if (wav.isRf64()) {
+            format += ", RF64";
+        }
+        if (!wav.getInfo().isEmpty()) {
+            format += ", tags " + wav.getInfo();
+        }
+        return format;
     }
 
     private void embedWatermark(ActionEvent e) {
+        if (isSpreadSpectrum()) {
+            embedSpreadSpectrum();
+            return;
+        }
         String watermark = watermarkField.getText().trim();
 
         // Validation
@@ -288,7 +315,7 @@ public class AudioWatermark extends JFrame {
             JOptionPane.showMessageDialog(this, "Watermark must be 16 characters or less!");
             return;
         }
-        if (originalAudioData == null) {
+        if (originalSamples == null) {
             JOptionPane.showMessageDialog(this, "Please load an audio file first!");
             return;
         }
@@ -306,21 +333,21 @@ public class AudioWatermark extends JFrame {
             log("Step 2 - Full watermark: \"" + fullWatermark + "\"");
 
             // Step 3: Calculate MD5 hash and XOR to get base offset
-            String md5Hash = calculateMD5Hash(watermark);
-            int baseOffset = calculateXORFromHash(md5Hash);
+            int baseOffset = KeySchedule.forAudio(watermark).getBaseOffset();
+            byte[] md5 = HashUtils.getMD5Hash(watermark);
+            String md5Hash = HashUtils.toHex(md5);
             log("Step 3 - MD5 Hash and XOR calculation:");
             log("  Input: \"" + watermark + "\"");
             log("  MD5 Hash: " + md5Hash);
             log("  XOR calculation:");
-            
+
             // Show XOR process step by step
-            int xorResult = Integer.parseInt(md5Hash.substring(0, 2), 16);
+            int xorResult = md5[0] & 0xFF;
             StringBuilder xorLog = new StringBuilder("    " + md5Hash.substring(0, 2));
-            for (int i = 2; i < md5Hash.length(); i += 2) {
-                int nextByte = Integer.parseInt(md5Hash.substring(i, i + 2), 16);
-                xorResult ^= nextByte;
-                xorLog.append(" XOR ").append(md5Hash.substring(i, i + 2)).append(" = ").append(String.format("%02X", xorResult));
-                if ((i / 2) % 4 == 3) { // Line break every 4 operations
+            for (int i = 1; i < md5.length; i++) {
+                xorResult ^= md5[i] & 0xFF;
+                xorLog.append(" XOR ").append(md5Hash, 2 * i, 2 * i + 2).append(" = ").append(String.format("%02X", xorResult));
+                if (i % 4 == 3) { // Line break every 4 operations
                     log(xorLog.toString());
                     xorLog = new StringBuilder("    ");
                 }
@@ -328,98 +355,67 @@ public class AudioWatermark extends JFrame {
             log(xorLog.toString());
             log("  Final XOR result (base offset): " + baseOffset + " (0x" + String.format("%02X", baseOffset) + ")");
 
-            // Step 4: Create watermarked audio data
-            watermarkedAudioData = originalAudioData.clone();
-
-            // Step 5: Find audio data start position
-            int dataStartIndex = findDataChunkStart(originalAudioData);
-            if (dataStartIndex == -1) {
-                throw new RuntimeException("Could not find audio data chunk");
-            }
-
-            // Step 6: Embed characters using cumulative ASCII positioning
-            log("Step 4 - Cumulative ASCII-based sample positioning:");
+            // The embed runs in the background; the window's audio is only replaced on success
             char[] chars = fullWatermark.toCharArray();
-            int cumulativePosition = baseOffset;
-            int lastHopDistance = 0;
-            int bytesPerSample = audioInfo.bitsPerSample / 8;
-            
-            for (int i = 0; i < chars.length; i++) {
-                char c = chars[i];
-                int ascii = (int) c;
-                
-                // Calculate current sample position
-                int currentSample;
-                if (i < watermark.length()) {
-                    // For watermark characters: cumulative ASCII + base offset
-                    cumulativePosition += ascii;
-                    currentSample = cumulativePosition % audioInfo.totalSamples;
-                    if (i == watermark.length() - 1) {
-                        // Calculate hop distance for timestamp/delimiter
-                        lastHopDistance = ascii;
-                    }
-                } else {
-                    // For timestamp and delimiter: use last character's ASCII as hop distance
-                    cumulativePosition += lastHopDistance;
-                    currentSample = cumulativePosition % audioInfo.totalSamples;
-                }
-                
-                // Calculate byte position in audio data
-                int sampleByteIndex = dataStartIndex + (currentSample * audioInfo.channels * bytesPerSample);
-                
-                // Ensure we don't go beyond audio data
-                if (sampleByteIndex + bytesPerSample > watermarkedAudioData.length) {
-                    currentSample = currentSample % (audioInfo.totalSamples / 2);
-                    sampleByteIndex = dataStartIndex + (currentSample * audioInfo.channels * bytesPerSample);
+            ByteBuffer source = originalSamples;
+            WavFile wav = wavFile;
+            long dataOffset = wav.getDataOffset();
+            int totalSamples = audioInfo.totalSamples;
+            // Fails here, before any work, for a sample format the codec cannot mark
+            NibbleCodec original = NibbleCodec.of(source, wav);
+            // Only the frames up to the end of the hop path can change, so only they are copied
+            long pathEnd = AudioWatermarkEngine.pathEnd(watermark, timestamp, baseOffset);
+            int patchSize = (int) Math.min((pathEnd + 1) * wav.getBlockAlign(), source.limit());
+            new BackgroundTask<ByteBuffer>(this, "Embedding watermark") {
+                @Override
+                protected ByteBuffer work() {
+                    // Step 4: Copy the samples the hop path can reach
+                    step(0, "Copying " + patchSize + " bytes of audio data...");
+                    ByteBuffer watermarked = ByteBuffer.allocate(patchSize).order(ByteOrder.LITTLE_ENDIAN);
+                    watermarked.put(source.duplicate().clear().limit(patchSize)).flip();
+
+                    // Step 6: Embed characters using cumulative ASCII positioning
+                    step(40, "Embedding " + chars.length + " characters...");
+                    log("Step 4 - Cumulative ASCII-based sample positioning:");
+                    RingBufferTraceSink trace = new RingBufferTraceSink(TRACE_CAPACITY);
+                    NibbleCodec codec = NibbleCodec.overlay(NibbleCodec.of(watermarked, wav), original);
+                    new AudioWatermarkEngine(trace).embed(codec, totalSamples, watermark, timestamp,
+                            baseOffset);
+
+                    step(70, "Writing log...");
+                    logEmbedTrace(trace, dataOffset, watermark);
+                    return watermarked;
                 }
 
-                // Embed character in LSB of audio sample
-                if (audioInfo.bitsPerSample == 16) {
-                    // 16-bit audio: modify LSB of the sample
-                    // Clear LSB and set new bit from character
-                    String binary = String.format("%8s", Integer.toBinaryString(ascii)).replace(' ', '0');
-                    
-                    // Use different bits for stereo channels
-                    for (int channel = 0; channel < audioInfo.channels && channel < 2; channel++) {
-                        int channelByteIndex = sampleByteIndex + (channel * 2);
-                        int channelSample = ByteBuffer.wrap(watermarkedAudioData, channelByteIndex, 2)
-                                                     .order(ByteOrder.LITTLE_ENDIAN).getShort();
-                        
-                        // Extract 4 bits for each channel from the 8-bit character
-                        int bitsToEmbed = Integer.parseInt(binary.substring(channel * 4, (channel + 1) * 4), 2);
-                        
-                        // Clear last 4 bits and embed new ones
-                        int newSample = (channelSample & 0xFFF0) | bitsToEmbed;
-                        
-                        ByteBuffer.wrap(watermarkedAudioData, channelByteIndex, 2)
-                                  .order(ByteOrder.LITTLE_ENDIAN).putShort((short) newSample);
-                    }
-                    
-                    log(String.format("  Char %d: '%c' (ASCII %d) -> Sample %d [Byte pos: %d]", 
-                          i, c, ascii, currentSample, sampleByteIndex));
-                    log(String.format("    Binary: %s -> Embedded in LSBs", binary));
-                    
-                    if (i < watermark.length()) {
-                        log(String.format("    Cumulative position: %d + %d = %d", 
-                              cumulativePosition - ascii, ascii, cumulativePosition));
-                    } else {
-                        log(String.format("    Using hop distance: +%d", lastHopDistance));
-                    }
-                } else {
-                    log("  Warning: Only 16-bit audio supported for embedding");
+                @Override
+                protected void succeeded(ByteBuffer watermarked) {
+                    watermarkedSamples = watermarked;
+
+                    saveAudioButton.setEnabled(true);
+                    statusLabel.setText("Status: Watermark embedded successfully");
+                    log("=== EMBEDDING COMPLETED ===\n");
+
+                    JOptionPane.showMessageDialog(AudioWatermark.this, 
+                        "Watermark embedded successfully!\n" +
+                        "Characters embedded: " + chars.length + "\n" +
+                        "Base offset (MD5 XOR): " + baseOffset + "\n" +
+                        "Full watermark: \"" + fullWatermark + "\"", 
+                        "Success", JOptionPane.INFORMATION_MESSAGE);
                 }
-            }
 
-            saveAudioButton.setEnabled(true);
-            statusLabel.setText("Status: Watermark embedded successfully");
-            log("=== EMBEDDING COMPLETED ===\n");
+                @Override
+                protected void failed(Throwable error) {
+                    JOptionPane.showMessageDialog(AudioWatermark.this, "Error embedding watermark: " + error.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    error.printStackTrace();
+                }
 
-            JOptionPane.showMessageDialog(this, 
-                "Watermark embedded successfully!\n" +
-                "Characters embedded: " + chars.length + "\n" +
-                "Base offset (MD5 XOR): " + baseOffset + "\n" +
-                "Full watermark: \"" + fullWatermark + "\"", 
-                "Success", JOptionPane.INFORMATION_MESSAGE);
+                @Override
+                protected void cancelled() {
+                    statusLabel.setText("Status: Embedding cancelled");
+                    log("=== EMBEDDING CANCELLED ===\n");
+                }
+            }.start(actionButtons());
 
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Error embedding watermark: " + ex.getMessage(),
@@ -429,6 +425,10 @@ public class AudioWatermark extends JFrame {
     }
 
     private void extractWatermark(ActionEvent e) {
+        if (isSpreadSpectrum()) {
+            detectSpreadSpectrum();
+            return;
+        }
         String expectedWatermark = watermarkField.getText().trim();
 
         if (expectedWatermark.isEmpty()) {
@@ -439,179 +439,448 @@ public class AudioWatermark extends JFrame {
             JOptionPane.showMessageDialog(this, "Watermark must be 16 characters or less!");
             return;
         }
-        if (originalAudioData == null) {
+        if (originalSamples == null) {
             JOptionPane.showMessageDialog(this, "Please load an audio file first!");
             return;
         }
 
         // Use watermarked audio if available, otherwise use original
-        byte[] audioToExtractFrom = (watermarkedAudioData != null) ? watermarkedAudioData : originalAudioData;
+        long dataOffset = wavFile.getDataOffset();
+        int totalSamples = audioInfo.totalSamples;
 
         try {
+            NibbleCodec original = NibbleCodec.of(originalSamples, wavFile);
+            NibbleCodec codec = (watermarkedSamples != null)
+                    ? NibbleCodec.overlay(NibbleCodec.of(watermarkedSamples, wavFile), original) : original;
+
             log("=== AUDIO WATERMARK EXTRACTION PROCESS ===");
             log("Expected watermark: \"" + expectedWatermark + "\"");
 
             // Step 1: Calculate MD5 hash and XOR to get base offset
-            String md5Hash = calculateMD5Hash(expectedWatermark);
-            int baseOffset = calculateXORFromHash(md5Hash);
+            int baseOffset = KeySchedule.forAudio(expectedWatermark).getBaseOffset();
             log("Step 1 - MD5 Hash and XOR verification:");
             log("  Input: \"" + expectedWatermark + "\"");
-            log("  MD5 Hash: " + md5Hash);
+            log("  MD5 Hash: " + HashUtils.toHex(HashUtils.getMD5Hash(expectedWatermark)));
             log("  Base offset: " + baseOffset);
 
-            // Step 2: Find audio data start
-            int dataStartIndex = findDataChunkStart(audioToExtractFrom);
-            int bytesPerSample = audioInfo.bitsPerSample / 8;
+            new BackgroundTask<String>(this, "Extracting watermark") {
+                @Override
+                protected String work() {
+                    // Step 3: Extract characters following the same cumulative ASCII pattern
+                    step(0, "Reading watermark...");
+                    log("Step 2 - Character extraction with cumulative ASCII positioning:");
+                    RingBufferTraceSink trace = new RingBufferTraceSink(TRACE_CAPACITY);
+                    String extractedText = new AudioWatermarkEngine(trace).extract(codec, totalSamples,
+                            expectedWatermark, baseOffset);
+
+                    step(50, "Writing log...");
+                    logExtractTrace(trace, dataOffset);
+                    if (extractedText.endsWith(AudioWatermarkEngine.END_MARKER)) {
+                        log("  -> Found END marker '#@'");
+                    } else {
+                        log("  -> Safety limit reached, stopping extraction");
+                    }
+                    return extractedText;
+                }
 
-            // Step 3: Extract characters following the same cumulative ASCII pattern
-            log("Step 2 - Character extraction with cumulative ASCII positioning:");
-            StringBuilder extractedText = new StringBuilder();
-            int cumulativePosition = baseOffset;
-            int lastHopDistance = 0;
-            int charIndex = 0;
+                @Override
+                protected void succeeded(String fullExtracted) {
+                    showExtracted(fullExtracted, expectedWatermark, baseOffset);
+                }
 
-            while (extractedText.length() < 100) { // Safety limit
-                int currentSample;
-                
-                if (charIndex < expectedWatermark.length()) {
-                    // For expected watermark characters: calculate based on expected ASCII
-                    char expectedChar = expectedWatermark.charAt(charIndex);
-                    int ascii = (int) expectedChar;
-                    cumulativePosition += ascii;
-                    currentSample = cumulativePosition % audioInfo.totalSamples;
-                    if (charIndex == expectedWatermark.length() - 1) {
-                        lastHopDistance = ascii;
-                    }
-                } else {
-                    // For timestamp and delimiter: use last hop distance
-                    cumulativePosition += lastHopDistance;
-                    currentSample = cumulativePosition % audioInfo.totalSamples;
+                @Override
+                protected void failed(Throwable error) {
+                    JOptionPane.showMessageDialog(AudioWatermark.this, "Error extracting watermark: " + error.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    error.printStackTrace();
                 }
-                
-                // Calculate byte position in audio data
-                int sampleByteIndex = dataStartIndex + (currentSample * audioInfo.channels * bytesPerSample);
-                
-                // Ensure we don't go beyond audio data
-                if (sampleByteIndex + bytesPerSample > audioToExtractFrom.length) {
-                    currentSample = currentSample % (audioInfo.totalSamples / 2);
-                    sampleByteIndex = dataStartIndex + (currentSample * audioInfo.channels * bytesPerSample);
+
+                @Override
+                protected void cancelled() {
+                    statusLabel.setText("Status: Extraction cancelled");
+                    log("=== EXTRACTION CANCELLED ===\n");
                 }
+            }.start(actionButtons());
 
-                // Extract character from LSBs of audio sample
-                int extractedAscii = 0;
-                if (audioInfo.bitsPerSample == 16) {
-                    StringBuilder binaryChar = new StringBuilder();
-                    
-                    // Extract 4 bits from each channel (up to 2 channels)
-                    for (int channel = 0; channel < audioInfo.channels && channel < 2; channel++) {
-                        int channelByteIndex = sampleByteIndex + (channel * 2);
-                        if (channelByteIndex + 1 < audioToExtractFrom.length) {
-                            int channelSample = ByteBuffer.wrap(audioToExtractFrom, channelByteIndex, 2)
-                                                         .order(ByteOrder.LITTLE_ENDIAN).getShort();
-                            
-                            // Extract last 4 bits
-                            int extractedBits = channelSample & 0x0F;
-                            binaryChar.append(String.format("%4s", Integer.toBinaryString(extractedBits)).replace(' ', '0'));
-                        }
-                    }
-                    
-                    // Pad to 8 bits if mono
-                    while (binaryChar.length() < 8) {
-                        binaryChar.append("0000");
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error extracting watermark: " + ex.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            ex.printStackTrace();
+        }
+    }
+
+    private boolean isSpreadSpectrum() {
+        return MODE_SPREAD_SPECTRUM.equals(modeBox.getSelectedItem());
+    }
+
+    // Robust mode reshapes every frame, so the marked audio is streamed straight into a new file
+    private void embedSpreadSpectrum() {
+        String payload = watermarkField.getText().trim();
+        String password = keyField.getText();
+        if (payload.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please enter a watermark!");
+            return;
+        }
+        if (payload.length() > SpreadSpectrumEngine.PAYLOAD_CHARS) {
+            JOptionPane.showMessageDialog(this, "Spread-spectrum watermarks must be "
+                    + SpreadSpectrumEngine.PAYLOAD_CHARS + " characters or less!");
+            return;
+        }
+        if (password.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please enter a key for spread-spectrum mode!");
+            return;
+        }
+        if (wavFile == null) {
+            JOptionPane.showMessageDialog(this, "Please load an audio file first!");
+            return;
+        }
+
+        SampleFormat format;
+        try {
+            format = SampleFormat.of(wavFile);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, "Error embedding watermark: " + ex.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new FileNameExtensionFilter("WAV Audio Files", "wav"));
+        fileChooser.setSelectedFile(new File("watermarked_audio.wav"));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File selected = fileChooser.getSelectedFile();
+        File outputFile = selected.getName().toLowerCase().endsWith(".wav")
+                ? selected : new File(selected.getAbsolutePath() + ".wav");
+        if (outputFile.getAbsoluteFile().equals(currentAudioFile.getAbsoluteFile())) {
+            JOptionPane.showMessageDialog(this, "Please choose a different file from the loaded one!");
+            return;
+        }
+
+        WavFile wav = wavFile;
+        long dataSize = wav.getDataSize();
+        int sampleRate = wav.getSampleRate();
+        double seconds = (double) wav.getFrameCount() / sampleRate;
+
+        log("=== SPREAD-SPECTRUM EMBEDDING ===");
+        log("Payload: \"" + payload + "\"");
+        log(String.format("Bands: %d between %.0f and %.0f Hz, +-%.2f dB per frame",
+                SpreadSpectrumEngine.BANDS, SpreadSpectrumEngine.BAND_LOW_HZ, SpreadSpectrumEngine.BAND_HIGH_HZ,
+                20 * SpreadSpectrumEngine.STRENGTH / Math.log(10)));
+        log(String.format("Period: %d frames (%.1f seconds), %.1f periods in this file",
+                SpreadSpectrumEngine.PERIOD_FRAMES,
+                (double) SpreadSpectrumEngine.PERIOD_FRAMES * SpreadSpectrumEngine.HOP_SIZE / sampleRate,
+                wav.getFrameCount() / (double) SpreadSpectrumEngine.PERIOD_FRAMES / SpreadSpectrumEngine.HOP_SIZE));
+
+        new BackgroundTask<Double>(this, "Embedding watermark") {
+            // Set once the output file has been created, so a failure only deletes what this task wrote
+            private boolean writing;
+
+            // A failure or cancel deletes the partial file here, once copyWithData has closed it
+            @Override
+            protected Double work() throws IOException {
+                SpreadSpectrumEngine engine = new SpreadSpectrumEngine(SpreadSpectrumEngine.key(password));
+                long start = System.nanoTime();
+                try {
+                    wav.copyWithData(outputFile.toPath(), (samples, out) -> {
+                        writing = true;
+                        engine.embed(samples, out, dataSize, format, sampleRate, payload,
+                                done -> step((int) (100 * done / Math.max(1, dataSize)),
+                                        "Embedding " + (100 * done / Math.max(1, dataSize)) + "%..."));
+                    });
+                } catch (IOException | RuntimeException ex) {
+                    if (writing && !outputFile.delete() && outputFile.exists()) {
+                        log("Could not delete the partial file " + outputFile.getAbsolutePath());
                     }
-                    
-                    String finalBinary = binaryChar.toString().substring(0, 8);
-                    extractedAscii = Integer.parseInt(finalBinary, 2);
+                    throw ex;
                 }
-                
-                char extractedChar = (char) extractedAscii;
+                return (System.nanoTime() - start) / 1e9;
+            }
 
-                log(String.format("  Sample %d [Byte %d]: ASCII %d -> '%c'",
-                        currentSample, sampleByteIndex, extractedAscii,
-                        (extractedAscii >= 32 && extractedAscii <= 126) ? extractedChar : '?'));
+            @Override
+            protected void succeeded(Double elapsed) {
+                statusLabel.setText("Status: Spread-spectrum watermark embedded");
+                log(String.format("Written %s in %.2f s (%.0fx real time)", outputFile.getAbsolutePath(), elapsed,
+                        seconds / Math.max(elapsed, 1e-9)));
+                log("=== EMBEDDING COMPLETED ===\n");
+                JOptionPane.showMessageDialog(AudioWatermark.this,
+                        "Watermark embedded successfully!\n" +
+                        "Payload: \"" + payload + "\"\n" +
+                        "Saved to: " + outputFile.getName(),
+                        "Success", JOptionPane.INFORMATION_MESSAGE);
+            }
 
-                extractedText.append(extractedChar);
+            @Override
+            protected void failed(Throwable error) {
+                JOptionPane.showMessageDialog(AudioWatermark.this, "Error embedding watermark: " + error.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                error.printStackTrace();
+            }
 
-                // Check for end marker
-                if (extractedText.toString().endsWith("#@")) {
-                    log("  -> Found END marker '#@'");
-                    break;
-                }
+            @Override
+            protected void cancelled() {
+                statusLabel.setText("Status: Embedding cancelled");
+                log("=== EMBEDDING CANCELLED ===\n");
+            }
+        }.start(actionButtons());
+    }
 
-                charIndex++;
+    // Looks for a spread-spectrum mark made with the key anywhere in the loaded file
+    private void detectSpreadSpectrum() {
+        String password = keyField.getText();
+        if (password.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please enter a key for spread-spectrum mode!");
+            return;
+        }
+        if (wavFile == null) {
+            JOptionPane.showMessageDialog(this, "Please load an audio file first!");
+            return;
+        }
+
+        SampleFormat format;
+        try {
+            format = SampleFormat.of(wavFile);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, "Error extracting watermark: " + ex.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
 
-                // Safety check
-                if (charIndex > 50) {
-                    log("  -> Safety limit reached, stopping extraction");
-                    break;
+        WavFile wav = wavFile;
+        long dataSize = wav.getDataSize();
+        int sampleRate = wav.getSampleRate();
+
+        log("=== SPREAD-SPECTRUM DETECTION ===");
+        new BackgroundTask<SpreadSpectrumEngine.Detection>(this, "Detecting watermark") {
+            @Override
+            protected SpreadSpectrumEngine.Detection work() throws IOException {
+                SpreadSpectrumEngine engine = new SpreadSpectrumEngine(SpreadSpectrumEngine.key(password));
+                try (ReadableByteChannel samples = wav.dataChannel()) {
+                    return engine.detect(samples, dataSize, format, sampleRate,
+                            done -> step((int) (100 * done / Math.max(1, dataSize)),
+                                    "Analysing " + (100 * done / Math.max(1, dataSize)) + "%..."));
                 }
             }
 
-            // Step 4: Validate extracted watermark
-            String fullExtracted = extractedText.toString();
-            log("Step 3 - Full extracted string: \"" + fullExtracted + "\"");
+            @Override
+            protected void succeeded(SpreadSpectrumEngine.Detection detection) {
+                log("Result: " + detection);
+                if (detection.isDetected()) {
+                    statusLabel.setText("Status: Spread-spectrum watermark found");
+                    log("=== DETECTION COMPLETED ===\n");
+                    JOptionPane.showMessageDialog(AudioWatermark.this,
+                            "Watermark found!\n" +
+                            "Payload: \"" + detection.getPayload() + "\"\n" +
+                            String.format("Score: %.1f (sync %d/%d)", detection.getScore(),
+                                    detection.getSyncBitsMatched(), SpreadSpectrumEngine.SYNC_BITS),
+                            "Detection Result", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    statusLabel.setText("Status: No spread-spectrum watermark found");
+                    log("=== DETECTION FAILED ===\n");
+                    String reason = detection.getPeriods() < 1
+                            ? "The recording is shorter than one watermark period."
+                            : "No watermark with this key was found.";
+                    JOptionPane.showMessageDialog(AudioWatermark.this, reason, "Detection Failed",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
 
-            if (!fullExtracted.endsWith("#@")) {
-                JOptionPane.showMessageDialog(this, "No valid watermark found with the given input!",
-                        "Extraction Failed", JOptionPane.ERROR_MESSAGE);
-                log("ERROR: End marker '#@' not found!");
-                return;
+            @Override
+            protected void failed(Throwable error) {
+                JOptionPane.showMessageDialog(AudioWatermark.this, "Error extracting watermark: " + error.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                error.printStackTrace();
             }
 
-            // Remove end marker
-            String extractedContent = fullExtracted.substring(0, fullExtracted.length() - 2);
-            
-            // Split into watermark and timestamp
-            if (extractedContent.length() >= expectedWatermark.length()) {
-                String extractedWatermark = extractedContent.substring(0, expectedWatermark.length());
-                String extractedTimestamp = extractedContent.substring(expectedWatermark.length());
-                
-                log("Step 4 - Extracted components:");
-                log("  Watermark: \"" + extractedWatermark + "\"");
-                log("  Timestamp: \"" + extractedTimestamp + "\"");
-                
-                boolean matches = extractedWatermark.equals(expectedWatermark);
-                log("  Match result: " + (matches ? "SUCCESS" : "FAILED"));
-                log("=== EXTRACTION COMPLETED ===\n");
-
-                String message = "Extraction Results:\n\n" +
-                        "Expected Watermark: \"" + expectedWatermark + "\"\n" +
-                        "Extracted Watermark: \"" + extractedWatermark + "\"\n" +
-                        "Extracted Timestamp: \"" + extractedTimestamp + "\"\n" +
-                        "Match: " + (matches ? "YES ✓" : "NO ✗") + "\n\n" +
-                        "Base Offset (MD5 XOR): " + baseOffset;
-
-                JOptionPane.showMessageDialog(this, message,
-                        matches ? "Extraction Successful" : "Extraction Failed",
-                        matches ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
-
-                statusLabel.setText("Status: Watermark extracted - " + (matches ? "Match!" : "No match"));
-            } else {
-                log("ERROR: Extracted content too short!");
-                JOptionPane.showMessageDialog(this, "Extracted content is too short!",
-                        "Extraction Failed", JOptionPane.ERROR_MESSAGE);
+            @Override
+            protected void cancelled() {
+                statusLabel.setText("Status: Detection cancelled");
+                log("=== DETECTION CANCELLED ===\n");
             }
+        }.start(actionButtons());
+    }
 
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Error extracting watermark: " + ex.getMessage(),
+    // Checks the spread-spectrum mark in every channel of every segment of the loaded file, in
+    // parallel, and logs a grid of the cells where it is intact
+    private void verifySegments(ActionEvent e) {
+        if (!isSpreadSpectrum()) {
+            JOptionPane.showMessageDialog(this, "Segment verification needs spread-spectrum mode:\n"
+                    + "the LSB watermark only covers a few frames at the start of the file.");
+            return;
+        }
+        String password = keyField.getText();
+        if (password.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please enter a key for spread-spectrum mode!");
+            return;
+        }
+        if (wavFile == null) {
+            JOptionPane.showMessageDialog(this, "Please load an audio file first!");
+            return;
+        }
+        try {
+            SampleFormat.of(wavFile);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, "Error verifying watermark: " + ex.getMessage(),
                     "Error", JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace();
+            return;
         }
+
+        WavFile wav = wavFile;
+        String payload = watermarkField.getText().trim();
+        String expected = payload.isEmpty() ? null : payload;
+        SpreadSpectrumVerifier verifier = new SpreadSpectrumVerifier(SpreadSpectrumEngine.key(password));
+        int cells = verifier.segments(wav.getFrameCount()) * wav.getChannels();
+
+        log("=== SEGMENT VERIFICATION ===");
+        log("Expected payload: " + (expected == null ? "(any)" : "\"" + expected + "\""));
+        new BackgroundTask<SpreadSpectrumVerifier.Report>(this, "Verifying segments") {
+            @Override
+            protected SpreadSpectrumVerifier.Report work() throws IOException {
+                return verifier.verify(wav, expected,
+                        done -> step(100 * done / cells, "Checked " + done + " of " + cells + " cells..."));
+            }
+
+            @Override
+            protected void succeeded(SpreadSpectrumVerifier.Report report) {
+                logReport(report);
+                int tampered = 0;
+                for (int s = 0; s < report.getSegments(); s++) {
+                    if (!report.isSegmentIntact(s)) {
+                        tampered++;
+                    }
+                }
+                if (tampered == 0) {
+                    statusLabel.setText("Status: Watermark intact in every segment");
+                    log("=== VERIFICATION COMPLETED ===\n");
+                    JOptionPane.showMessageDialog(AudioWatermark.this,
+                            "Watermark intact in all " + report.getSegments() + " segments and "
+                                    + report.getChannels() + " channels.",
+                            "Verification Result", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    statusLabel.setText("Status: Watermark missing in " + tampered + " segment(s)");
+                    log("=== VERIFICATION FAILED ===\n");
+                    JOptionPane.showMessageDialog(AudioWatermark.this,
+                            "Watermark missing or altered in " + tampered + " of " + report.getSegments()
+                                    + " segments.\nSee the log for the affected times and channels.",
+                            "Verification Failed", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+
+            @Override
+            protected void failed(Throwable error) {
+                JOptionPane.showMessageDialog(AudioWatermark.this, "Error verifying watermark: " + error.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                error.printStackTrace();
+            }
+
+            @Override
+            protected void cancelled() {
+                statusLabel.setText("Status: Verification cancelled");
+                log("=== VERIFICATION CANCELLED ===\n");
+            }
+        }.start(actionButtons());
     }
 
-    private int findDataChunkStart(byte[] wavData) {
-        // Look for "data" chunk marker
-        for (int i = 0; i < wavData.length - 8; i++) {
-            if (new String(wavData, i, 4).equals("data")) {
-                // Return position after the 4-byte size field
-                return i + 8;
+    // One line per segment: its time range, then OK or -- per channel
+    private void logReport(SpreadSpectrumVerifier.Report report) {
+        StringBuilder header = new StringBuilder("  Segment            ");
+        for (int c = 0; c < report.getChannels(); c++) {
+            header.append(String.format(" ch%-2d", c));
+        }
+        log(header.toString());
+        for (int s = 0; s < report.getSegments(); s++) {
+            StringBuilder line = new StringBuilder(String.format("  %8.1f - %8.1f s", report.getStartSeconds(s),
+                    report.getEndSeconds(s)));
+            for (int c = 0; c < report.getChannels(); c++) {
+                line.append(report.isIntact(s, c) ? "  OK " : "  -- ");
+            }
+            log(line.toString());
+        }
+    }
+
+    // Split a raw extracted string into watermark and timestamp and compare with the expected watermark
+    private void showExtracted(String fullExtracted, String expectedWatermark, int baseOffset) {
+        // Step 4: Validate extracted watermark
+        log("Step 3 - Full extracted string: \"" + fullExtracted + "\"");
+
+        AudioVerification result = AudioVerification.of(fullExtracted, expectedWatermark);
+        if (!result.isMarkerFound()) {
+            JOptionPane.showMessageDialog(this, "No valid watermark found with the given input!",
+                    "Extraction Failed", JOptionPane.ERROR_MESSAGE);
+            log("ERROR: End marker '#@' not found!");
+            return;
+        }
+
+        if (result.getWatermark() != null) {
+            String extractedWatermark = result.getWatermark();
+            String extractedTimestamp = result.getTimestamp();
+
+            log("Step 4 - Extracted components:");
+            log("  Watermark: \"" + extractedWatermark + "\"");
+            log("  Timestamp: \"" + extractedTimestamp + "\"");
+            
+            boolean matches = result.isMatch();
+            log("  Match result: " + (matches ? "SUCCESS" : "FAILED"));
+            log("=== EXTRACTION COMPLETED ===\n");
+
+            String message = "Extraction Results:\n\n" +
+                    "Expected Watermark: \"" + expectedWatermark + "\"\n" +
+                    "Extracted Watermark: \"" + extractedWatermark + "\"\n" +
+                    "Extracted Timestamp: \"" + extractedTimestamp + "\"\n" +
+                    "Match: " + (matches ? "YES ✓" : "NO ✗") + "\n\n" +
+                    "Base Offset (MD5 XOR): " + baseOffset;
+
+            JOptionPane.showMessageDialog(this, message,
+                    matches ? "Extraction Successful" : "Extraction Failed",
+                    matches ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+
+            statusLabel.setText("Status: Watermark extracted - " + (matches ? "Match!" : "No match"));
+        } else {
+            log("ERROR: Extracted content too short!");
+            JOptionPane.showMessageDialog(this, "Extracted content is too short!",
+                    "Extraction Failed", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // Step-by-step log of the samples written, rebuilt from the trace after the loop.
+    // Trace locations are offsets into the data chunk, which starts at file offset dataOffset.
+    private void logEmbedTrace(RingBufferTraceSink trace, long dataOffset, String watermark) {
+        int frameSize = audioInfo.channels * (audioInfo.bitsPerSample / 8);
+        int lastHopDistance = watermark.charAt(watermark.length() - 1);
+        logDropped(trace);
+        trace.forEach((kind, i, position, byteIndex, ascii, before, after) -> {
+            String binary = String.format("%8s", Integer.toBinaryString(ascii)).replace(' ', '0');
+            log(String.format("  Char %d: '%c' (ASCII %d) -> Sample %d [Byte pos: %d]",
+                    i, (char) ascii, ascii, byteIndex / frameSize, dataOffset + byteIndex));
+            log(String.format("    Binary: %s -> Embedded in LSBs", binary));
+
+            if (i < watermark.length()) {
+                log(String.format("    Cumulative position: %d + %d = %d", position - ascii, ascii, position));
+            } else {
+                log(String.format("    Using hop distance: +%d", lastHopDistance));
             }
+        });
+    }
+
+    // Step-by-step log of the samples read
+    private void logExtractTrace(RingBufferTraceSink trace, long dataOffset) {
+        int frameSize = audioInfo.channels * (audioInfo.bitsPerSample / 8);
+        logDropped(trace);
+        trace.forEach((kind, i, position, byteIndex, ascii, before, after) ->
+                log(String.format("  Sample %d [Byte %d]: ASCII %d -> '%c'",
+                        byteIndex / frameSize, dataOffset + byteIndex, ascii,
+                        (ascii >= 32 && ascii <= 126) ? (char) ascii : '?')));
+    }
+
+    private void logDropped(RingBufferTraceSink trace) {
+        if (trace.dropped() > 0) {
+            log("  ... " + trace.dropped() + " earlier samples not shown");
         }
-        return -1;
     }
 
     private void saveAudio(ActionEvent e) {
-        if (watermarkedAudioData == null) {
+        if (watermarkedSamples == null) {
             JOptionPane.showMessageDialog(this, "No watermarked audio to save!");
             return;
         }
@@ -621,39 +890,143 @@ public class AudioWatermark extends JFrame {
         fileChooser.setSelectedFile(new File("watermarked_audio.wav"));
 
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            try {
-                File outputFile = fileChooser.getSelectedFile();
-                if (!outputFile.getName().toLowerCase().endsWith(".wav")) {
-                    outputFile = new File(outputFile.getAbsolutePath() + ".wav");
+            File selected = fileChooser.getSelectedFile();
+            File outputFile = selected.getName().toLowerCase().endsWith(".wav")
+                    ? selected : new File(selected.getAbsolutePath() + ".wav");
+
+            // The watermarked frames are written over a streamed copy of the loaded file;
+            // everything else goes through transferTo without being read into memory
+            WavFile wav = wavFile;
+            ByteBuffer watermarked = watermarkedSamples;
+            new BackgroundTask<Void>(this, "Saving audio") {
+                @Override
+                protected Void work() throws IOException {
+                    step(0, "Writing " + outputFile.getName() + "...");
+                    wav.copyWithSamples(outputFile.toPath(), 0, watermarked);
+                    return null;
                 }
 
-                try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                    fos.write(watermarkedAudioData);
+                @Override
+                protected void succeeded(Void result) {
+                    statusLabel.setText("Status: Watermarked audio saved");
+                    log("Audio saved: " + outputFile.getAbsolutePath());
+                    JOptionPane.showMessageDialog(AudioWatermark.this, "Watermarked audio saved successfully!");
                 }
 
-                statusLabel.setText("Status: Watermarked audio saved");
-                log("Audio saved: " + outputFile.getAbsolutePath());
-                JOptionPane.showMessageDialog(this, "Watermarked audio saved successfully!");
-
-            } catch (IOException ex) {
-                JOptionPane.showMessageDialog(this, "Error saving audio: " + ex.getMessage(),
-                        "Error", JOptionPane.ERROR_MESSAGE);
-            }
+                @Override
+                protected void failed(Throwable error) {
+                    JOptionPane.showMessageDialog(AudioWatermark.this, "Error saving audio: " + error.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }.start(actionButtons());
         }
     }
 
+    // Streams the loaded file to the sound card. With a watermark entered in LSB mode it is
+    // embedded on the fly with the current timestamp, a few ms of audio at a time; otherwise the
+    // file plays as it is.
+    //
+    // Manual check after touching this: play, Stop partway, play again, then embed and extract.
+    // Stopping must leave the loaded file usable - no ClosedChannelException from any later action.
     private void playAudio(ActionEvent e) {
-        // Simple audio playback notification
-        if (currentAudioFile != null) {
-            JOptionPane.showMessageDialog(this, 
-                "Audio playback would be implemented here.\n" +
-                "File: " + currentAudioFile.getName() + "\n" +
-                "Use your system's default audio player to listen to the file.",
-                "Audio Playback", JOptionPane.INFORMATION_MESSAGE);
+        if (wavFile == null) {
+            JOptionPane.showMessageDialog(this, "Please load an audio file first!");
+            return;
+        }
+        String watermark = isSpreadSpectrum() ? "" : watermarkField.getText().trim();
+        if (watermark.length() > 16) {
+            JOptionPane.showMessageDialog(this, "Watermark must be 16 characters or less!");
+            return;
+        }
+
+        WavFile wav = wavFile;
+        String timestamp = getCurrentTimestamp();
+        LiveWatermarker marker;
+        SourceDataLine line;
+        try {
+            marker = LiveWatermarker.forWav(wav, watermark, timestamp, LiveWatermarker.DEFAULT_BLOCK_FRAMES);
+            AudioFormat format = audioFormat(wav);
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, PLAYBACK_BUFFER_BLOCKS * marker.getBlockFrames() * wav.getBlockAlign());
+            line.start();
+        } catch (IllegalArgumentException | LineUnavailableException ex) {
+            JOptionPane.showMessageDialog(this, "Cannot play audio: " + ex.getMessage(),
+                    "Audio Playback", JOptionPane.ERROR_MESSAGE);
+            return;
         }
+
+        long dataSize = wav.getDataSize();
+        log("=== PLAYBACK ===");
+        if (watermark.isEmpty()) {
+            log("Playing without a watermark");
+        } else {
+            log("Embedding \"" + watermark + timestamp + AudioWatermarkEngine.END_MARKER + "\" live, "
+                    + marker.getBlockFrames() + " frames per block");
+        }
+        statusLabel.setText("Status: Playing...");
+
+        new BackgroundTask<Void>(this, "Playing audio") {
+            @Override
+            protected Void work() throws IOException {
+                try (ReadableByteChannel samples = wav.dataChannel()) {
+                    marker.stream(samples, dataSize, AudioSink.of(line),
+                            done -> step((int) (100 * done / Math.max(1, dataSize)),
+                                    "Playing " + (100 * done / Math.max(1, dataSize)) + "%..."));
+                }
+                line.drain();
+                return null;
+            }
+
+            @Override
+            protected void succeeded(Void result) {
+                line.close();
+                log(String.format("Marked %d blocks, %.1f us each on average, %.1f us at most",
+                        marker.getBlocks(), marker.getMeanMarkNanos() / 1e3, marker.getMaxMarkNanos() / 1e3));
+                log("=== PLAYBACK FINISHED ===\n");
+                statusLabel.setText("Status: Playback finished");
+            }
+
+            @Override
+            protected void failed(Throwable error) {
+                line.close();
+                JOptionPane.showMessageDialog(AudioWatermark.this, "Error playing audio: " + error.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                error.printStackTrace();
+            }
+
+            // Closing the line releases a write still blocked on it; the worker is not interrupted (that
+            // would close the WavFile's channel), it stops at the next step() once the write returns
+            @Override
+            protected void cancelled() {
+                line.stop();
+                line.flush();
+                line.close();
+                statusLabel.setText("Status: Playback stopped");
+                log("=== PLAYBACK STOPPED ===\n");
+            }
+        }.start(actionButtons());
+    }
+
+    private static AudioFormat audioFormat(WavFile wav) {
+        AudioFormat.Encoding encoding = wav.isFloat() ? AudioFormat.Encoding.PCM_FLOAT
+                : wav.getBitsPerSample() == 8 ? AudioFormat.Encoding.PCM_UNSIGNED
+                : AudioFormat.Encoding.PCM_SIGNED;
+        return new AudioFormat(encoding, wav.getSampleRate(), wav.getBitsPerSample(), wav.getChannels(),
+                wav.getBlockAlign(), wav.getSampleRate(), false);
     }
 
+    // Buttons disabled while an embed or extract runs in the background
+    private JButton[] actionButtons() {
+        return new JButton[] { loadAudioButton, embedButton, extractButton, verifyButton, saveAudioButton,
+                playButton };
+    }
+
+    // Callable from a BackgroundTask too; lines are handed to the EDT in order
     private void log(String message) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> log(message));
+            return;
+        }
         logArea.append(message + "\n");
         logArea.setCaretPosition(logArea.getDocument().getLength());
     }
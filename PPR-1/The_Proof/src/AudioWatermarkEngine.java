@@ -0,0 +1,100 @@
+// The AudioWatermark scheme without any UI. The embedded string is
+//   watermark + timestamp + "#@"
+// one character per frame, packed into sample LSBs by NibbleCodec. Frames are
+// visited at
+//   base + c0, base + c0 + c1, ... for the watermark characters c0 .. cn, then
+//   in steps of cn for the timestamp and end marker
+// (modulo the frame count), where base is the XOR of the watermark's MD5 bytes.
+// Extraction walks the same path, so it needs the expected watermark. The path
+// comes from a cached HopIndex, so no position arithmetic runs per character.
+//
+// Samples are read and written through a NibbleCodec bound to the data chunk, so
+// any PCM or float format it accepts works in place. Nothing is formatted or
+// logged; pass a TraceSink to record every frame touched (locations are byte
+// offsets into the data chunk, before/after the first channel's raw sample).
+public final class AudioWatermarkEngine {
+
+    public static final String END_MARKER = "#@";
+
+    // Extraction stops after this many characters if no end marker turns up
+    public static final int MAX_EXTRACT_CHARS = 51;
+
+    private final TraceSink trace;
+    private final boolean tracing;
+
+    public AudioWatermarkEngine() {
+        this(TraceSink.NONE);
+    }
+
+    public AudioWatermarkEngine(TraceSink trace) {
+        this.trace = trace;
+        this.tracing = trace.isEnabled();
+    }
+
+    // totalFrames is the frame count of the whole recording; the codec's buffer may be a window at its start
+    public void embed(NibbleCodec codec, int totalFrames, String watermark, String timestamp, int baseOffset) {
+        char[] chars = (watermark + timestamp + END_MARKER).toCharArray();
+        HopIndex path = HopIndex.of(watermark, baseOffset, totalFrames, codec.getAddressableFrames(), chars.length);
+        int lastHop = watermark.charAt(watermark.length() - 1);
+        int position = baseOffset;
+
+        for (int i = 0; i < chars.length; i++) {
+            int frame = path.frame(i);
+
+            int before = tracing ? codec.rawSample(frame) : 0;
+            codec.encode(frame, chars[i] & 0xFF);
+
+            if (tracing) {
+                position += i < watermark.length() ? chars[i] : lastHop;
+                trace.event(TraceSink.EMBED, i, position, codec.byteOffset(frame), chars[i], before,
+                        codec.rawSample(frame));
+            }
+        }
+    }
+
+    // Raw characters read along the hop path: watermark + timestamp + "#@" when the expected
+    // watermark is right, otherwise whatever the LSBs hold, up to MAX_EXTRACT_CHARS
+    public String extract(NibbleCodec codec, int totalFrames, String expectedWatermark, int baseOffset) {
+        HopIndex path = HopIndex.of(expectedWatermark, baseOffset, totalFrames, codec.getAddressableFrames(),
+                MAX_EXTRACT_CHARS);
+        int lastHop = expectedWatermark.charAt(expectedWatermark.length() - 1);
+        char[] text = new char[MAX_EXTRACT_CHARS];
+        int length = 0;
+        int position = baseOffset;
+
+        while (length < MAX_EXTRACT_CHARS) {
+            int frame = path.frame(length);
+
+            int value = codec.decode(frame);
+            if (tracing) {
+                position += length < expectedWatermark.length() ? expectedWatermark.charAt(length) : lastHop;
+                trace.event(TraceSink.EXTRACT, length, position, codec.byteOffset(frame), value, 0, 0);
+            }
+
+            text[length++] = (char) value;
+            if (length >= 2 && text[length - 2] == '#' && text[length - 1] == '@') {
+                break;
+            }
+        }
+
+        return new String(text, 0, length);
+    }
+
+    // Frame of every write embed() makes, in order, when the codec holds all totalFrames frames
+    // (so nothing is folded); character i of watermark + timestamp + "#@" goes to frames[i], and a
+    // later write to the same frame wins. Lets a stream be marked block by block as it passes.
+    public static int[] pathFrames(String watermark, String timestamp, int baseOffset, int totalFrames) {
+        int length = watermark.length() + timestamp.length() + END_MARKER.length();
+        return HopIndex.of(watermark, baseOffset, totalFrames, totalFrames, length).toArray(length);
+    }
+
+    // Last hop position of the embedded string. Embedding touches no frame above it (nor above the
+    // last frame), so a copy of the frames up to here is all that changes.
+    public static long pathEnd(String watermark, String timestamp, int baseOffset) {
+        long end = baseOffset;
+        for (int i = 0; i < watermark.length(); i++) {
+            end += watermark.charAt(i);
+        }
+        return end + (long) (timestamp.length() + END_MARKER.length()) * watermark.charAt(watermark.length() - 1);
+    }
+}
@@ -0,0 +1,62 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Appends trace events to a file as fixed 25-byte records: the kind as one
+// byte, then index, position, location, value, before and after as big-endian
+// ints. Meant for full traces of large runs that would swamp a text log;
+// replay() feeds a saved file back into any other sink.
+public final class BinaryFileTraceSink implements TraceSink, Closeable {
+
+    public static final int RECORD_SIZE = 1 + 6 * Integer.BYTES;
+
+    private final DataOutputStream out;
+
+    public BinaryFileTraceSink(Path file) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+    }
+
+    @Override
+    public synchronized void event(int kind, int index, int position, int location, int value, int before,
+                                   int after) {
+        try {
+            out.writeByte(kind);
+            out.writeInt(index);
+            out.writeInt(position);
+            out.writeInt(location);
+            out.writeInt(value);
+            out.writeInt(before);
+            out.writeInt(after);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing trace file", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    // Read every record of a trace file into target
+    public static void replay(Path file, TraceSink target) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int kind;
+                try {
+                    kind = in.readByte();
+                } catch (EOFException end) {
+                    return;
+                }
+                target.event(kind, in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                        in.readInt());
+            }
+        }
+    }
+}
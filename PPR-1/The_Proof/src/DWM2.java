@@ -7,11 +7,12 @@ import java.io.File;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import javax.imageio.ImageIO;
 
 public class DWM2 extends JFrame {
+    // Pixels kept for the step-by-step log of one embed or extract
+    private static final int TRACE_CAPACITY = 256;
+
     private JTextField watermarkField;
     private JPasswordField passwordField;
     private JTextArea logArea;
@@ -92,7 +93,7 @@ public class DWM2 extends JFrame {
 
     private JPanel createImagePanel() {
         JPanel panel = new JPanel(new BorderLayout());
-        panel.setBorder(new TitledBorder("Image Preview (256x256 BMP)"));
+        panel.setBorder(new TitledBorder("Image Preview (BMP)"));
 
         imageLabel = new JLabel("No image loaded", SwingConstants.CENTER);
         imageLabel.setPreferredSize(new Dimension(280, 280));
@@ -125,7 +126,7 @@ public class DWM2 extends JFrame {
     private JPanel createButtonPanel() {
         JPanel panel = new JPanel(new FlowLayout());
 
-        loadImageButton = new JButton("Load 256x256 BMP Image");
+        loadImageButton = new JButton("Load BMP Image");
         loadImageButton.addActionListener(this::loadImage);
 
         embedButton = new JButton("Embed Watermark");
@@ -164,15 +165,15 @@ public class DWM2 extends JFrame {
                 currentImageFile = fileChooser.getSelectedFile();
                 originalImage = ImageIO.read(currentImageFile);
 
-                if (originalImage.getWidth() != 256 || originalImage.getHeight() != 256) {
+                if (originalImage == null) {
                     JOptionPane.showMessageDialog(this,
-                            "Image must be exactly 256x256 pixels!", "Invalid Image Size",
+                            "Unsupported image file!", "Invalid Image",
                             JOptionPane.ERROR_MESSAGE);
                     return;
                 }
 
                 // Display image
-                ImageIcon icon = new ImageIcon(originalImage.getScaledInstance(256, 256, Image.SCALE_SMOOTH));
+                ImageIcon icon = previewIcon(originalImage);
                 imageLabel.setIcon(icon);
                 imageLabel.setText("");
 
@@ -191,56 +192,6 @@ public class DWM2 extends JFrame {
         }
     }
 
-    private String calculateMD5Hash(String input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = md.digest(input.getBytes());
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("MD5 algorithm not available", e);
-        }
-    }
-
-    private int calculateXORFromHash(String hash) {
-        int result = Integer.parseInt(hash.substring(0, 2), 16); // Start with first byte
-
-        // XOR all subsequent byte pairs
-        for (int i = 2; i < hash.length(); i += 2) {
-            int nextByte = Integer.parseInt(hash.substring(i, i + 2), 16);
-            result ^= nextByte;
-        }
-
-        return result; // Will be 0-255
-    }
-
-    private int calculateXORFirst12Bytes(String hash) {
-        int result = Integer.parseInt(hash.substring(0, 2), 16); // Start with first byte
-
-        // XOR first 12 bytes (24 hex chars)
-        for (int i = 2; i < 24 && i < hash.length(); i += 2) {
-            int nextByte = Integer.parseInt(hash.substring(i, i + 2), 16);
-            result ^= nextByte;
-        }
-
-        return result; // Will be 0-255
-    }
-
-    private int calculateXORLast4Bytes(String hash) {
-        int result = Integer.parseInt(hash.substring(24, 26), 16); // 13th byte
-
-        // XOR last 4 bytes (starting from position 24)
-        for (int i = 26; i < hash.length(); i += 2) {
-            int nextByte = Integer.parseInt(hash.substring(i, i + 2), 16);
-            result ^= nextByte;
-        }
-
-        return result; // Will be 0-255
-    }
-
     private void embedWatermark(ActionEvent e) {
         String watermark = watermarkField.getText().trim();
         String password = new String(passwordField.getPassword()).trim();
@@ -278,9 +229,11 @@ public class DWM2 extends JFrame {
             log("  Structure: watermark + '#' (delimiter) + timestamp + '#@' (end marker)");
 
             // Step 3: Calculate MD5 hash of PASSWORD and XOR calculations
-            String passwordMD5Hash = calculateMD5Hash(password);
-            int baseOffsetX = calculateXORFirst12Bytes(passwordMD5Hash);
-            int hopDistanceY = calculateXORLast4Bytes(passwordMD5Hash);
+            byte[] passwordMD5 = HashUtils.getMD5Hash(password);
+            String passwordMD5Hash = HashUtils.toHex(passwordMD5);
+            KeySchedule key = KeySchedule.forDwm2(password);
+            int baseOffsetX = key.getBaseOffset();
+            int hopDistanceY = key.getHopDistance();
 
             log("Step 3 - Password MD5 Hash and XOR calculations:");
             log("  Password: \"" + password + "\"");
@@ -288,14 +241,13 @@ public class DWM2 extends JFrame {
             log("  XOR calculation (first 12 bytes):");
 
             // Show XOR process for first 12 bytes step by step
-            int xorResult = Integer.parseInt(passwordMD5Hash.substring(0, 2), 16);
+            int xorResult = passwordMD5[0] & 0xFF;
             StringBuilder xorLog = new StringBuilder("    " + passwordMD5Hash.substring(0, 2));
-            for (int i = 2; i < 24; i += 2) {
-                int nextByte = Integer.parseInt(passwordMD5Hash.substring(i, i + 2), 16);
-                xorResult ^= nextByte;
-                xorLog.append(" XOR ").append(passwordMD5Hash.substring(i, i + 2)).append(" = ")
+            for (int i = 1; i < 12; i++) {
+                xorResult ^= passwordMD5[i] & 0xFF;
+                xorLog.append(" XOR ").append(passwordMD5Hash, 2 * i, 2 * i + 2).append(" = ")
                         .append(String.format("%02X", xorResult));
-                if ((i / 2) % 4 == 3) { // Line break every 4 operations
+                if (i % 4 == 3) { // Line break every 4 operations
                     log(xorLog.toString());
                     xorLog = new StringBuilder("    ");
                 }
@@ -304,43 +256,40 @@ public class DWM2 extends JFrame {
             log("  X (First 12 bytes XOR result): " + baseOffsetX + " (0x" + String.format("%02X", baseOffsetX) + ")");
 
             log("  XOR calculation (last 4 bytes):");
-            int xorResultLast = Integer.parseInt(passwordMD5Hash.substring(24, 26), 16);
+            int xorResultLast = passwordMD5[12] & 0xFF;
             StringBuilder xorLogLast = new StringBuilder("    " + passwordMD5Hash.substring(24, 26));
-            for (int i = 26; i < 32; i += 2) {
-                int nextByte = Integer.parseInt(passwordMD5Hash.substring(i, i + 2), 16);
-                xorResultLast ^= nextByte;
-                xorLogLast.append(" XOR ").append(passwordMD5Hash.substring(i, i + 2)).append(" = ")
+            for (int i = 13; i < 16; i++) {
+                xorResultLast ^= passwordMD5[i] & 0xFF;
+                xorLogLast.append(" XOR ").append(passwordMD5Hash, 2 * i, 2 * i + 2).append(" = ")
                         .append(String.format("%02X", xorResultLast));
             }
             log(xorLogLast.toString());
             log("  Y (Last 4 bytes XOR result / hop distance): " + hopDistanceY + " (0x"
                     + String.format("%02X", hopDistanceY) + ")");
 
-            // Step 4: Create watermarked image
-            watermarkedImage = new BufferedImage(originalImage.getWidth(),
-                    originalImage.getHeight(), BufferedImage.TYPE_INT_RGB);
-            Graphics2D g2d = watermarkedImage.createGraphics();
-            g2d.drawImage(originalImage, 0, 0, null);
-            g2d.dispose();
+            // The hop path must stay inside the image, otherwise it wraps onto pixels it already used
+            PixelRaster original = PixelRaster.of(originalImage);
+            int width = original.getWidth();
+            int totalPixels = original.getTotalPixels();
+            long pathEnd = DWM2Engine.pathEnd(watermark, timestamp, key);
+
+            if (pathEnd >= totalPixels) {
+                log("  ERROR: Hop path needs " + (pathEnd + 1) + " pixels, image has " + totalPixels);
+                JOptionPane.showMessageDialog(this,
+                        "Image too small for this watermark and password!\n" +
+                                "The hop path needs " + (pathEnd + 1) + " pixels, the image has " + totalPixels + ".",
+                        "Capacity Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
 
             // Step 4: Check for collision at position X
             log("Step 4 - Check initial position X for collision:");
-            int initialPixelX = baseOffsetX % (256 * 256);
-            int xX = initialPixelX % 256;
-            int yX = initialPixelX / 256;
-            int existingRGB = originalImage.getRGB(xX, yX);
-            int existingR = (existingRGB >> 16) & 0xFF;
-            int existingG = (existingRGB >> 8) & 0xFF;
-            int existingB = existingRGB & 0xFF;
+            int initialPixelX = baseOffsetX % totalPixels;
+            int xX = initialPixelX % width;
+            int yX = initialPixelX / width;
 
             // Check if '*' marker already embedded (check LSBs for ASCII 42)
-            String existingRedBits = String.format("%3s", Integer.toBinaryString(existingR & 0x07)).replace(' ', '0');
-            String existingGreenBits = String.format("%3s", Integer.toBinaryString(existingG & 0x07)).replace(' ', '0');
-            String existingBlueBits = String.format("%2s", Integer.toBinaryString(existingB & 0x03)).replace(' ', '0');
-            String existingBinary = existingRedBits + existingGreenBits + existingBlueBits;
-            int existingASCII = Integer.parseInt(existingBinary, 2);
-
-            if (existingASCII == 42) { // ASCII for '*'
+            if (DWM2Engine.isMarked(original, key)) {
                 log("  ERROR: Collision detected! Position " + initialPixelX + " already contains '*' marker");
                 JOptionPane.showMessageDialog(this,
                         "Password collision detected!\n" +
@@ -356,104 +305,73 @@ public class DWM2 extends JFrame {
             log("Step 5 - Embedding with new position flow:");
             log("  Position flow: X -> X+Y -> prev+ASCII(char) -> ... -> last+X (for timestamp)");
 
-            // Build array with '*' marker + fullWatermark
-            char[] fullWatermarkChars = fullWatermark.toCharArray();
-            char[] chars = new char[fullWatermarkChars.length + 1];
-            chars[0] = '*'; // Marker
-            System.arraycopy(fullWatermarkChars, 0, chars, 1, fullWatermarkChars.length);
-
-            int currentPosition = baseOffsetX;
-
-            for (int i = 0; i < chars.length; i++) {
-                char c = chars[i];
-                int ascii = (int) c;
-
-                // Calculate current pixel position based on new flow
-                int currentPixel;
-
-                if (i == 0) {
-                    // Position 0: Embed '*' marker at X
-                    currentPixel = currentPosition % (256 * 256);
-                    log("  Pos 0: '*' (marker) -> Pixel " + currentPixel + " (X position)");
-                } else if (i == 1) {
-                    // Position 1: X + Y, embed first watermark char
-                    currentPosition += hopDistanceY;
-                    currentPixel = currentPosition % (256 * 256);
-                    log("  Pos 1: '" + c + "' (ASCII " + ascii + ") -> Pixel " + currentPixel + " (X + Y = "
-                            + baseOffsetX + " + " + hopDistanceY + " = " + currentPosition + ")");
-                } else if (i <= watermark.length()) {
-                    // Positions 2 to watermark.length: prev + ASCII of previous char
-                    int prevChar = (int) chars[i - 1];
-                    currentPosition += prevChar;
-                    currentPixel = currentPosition % (256 * 256);
-                    log("  Pos " + i + ": '" + c + "' (ASCII " + ascii + ") -> Pixel " + currentPixel
-                            + " (prev + ASCII(" + chars[i - 1] + ") = " + (currentPosition - prevChar) + " + "
-                            + prevChar + " = " + currentPosition + ")");
-                } else if (i == watermark.length() + 1) {
-                    // Position watermark.length + 1: Embed delimiter '#', still use ASCII-based
-                    // positioning
-                    int prevChar = (int) chars[i - 1];
-                    currentPosition += prevChar;
-                    currentPixel = currentPosition % (256 * 256);
-                    log("  Pos " + i + ": '" + c + "' (delimiter '#', ASCII " + ascii + ") -> Pixel " + currentPixel
-                            + " (prev + ASCII(" + chars[i - 1] + ") = " + (currentPosition - prevChar) + " + "
-                            + prevChar + " = " + currentPosition + ")");
-                } else {
-                    // For timestamp and end marker (after '#'): hop by X
-                    currentPosition += baseOffsetX;
-                    currentPixel = currentPosition % (256 * 256);
-                    log("  Pos " + i + ": '" + c + "' (ASCII " + ascii + ") -> Pixel " + currentPixel + " (prev + X = "
-                            + (currentPosition - baseOffsetX) + " + " + baseOffsetX + " = " + currentPosition + ")");
+            // '*' marker + fullWatermark, as laid down by the engine
+            char[] chars = (DWM2Engine.MARKER + fullWatermark).toCharArray();
+
+            // The copy and the embed run in the background; the window's image is only replaced on success
+            BufferedImage source = originalImage;
+            new BackgroundTask<BufferedImage>(this, "Embedding watermark") {
+                // Scaled in the background too, read by succeeded()
+                private ImageIcon imagePreview;
+
+                @Override
+                protected BufferedImage work() {
+                    step(0, "Copying image...");
+                    BufferedImage result = new BufferedImage(source.getWidth(),
+                            source.getHeight(), BufferedImage.TYPE_INT_RGB);
+                    Graphics2D g2d = result.createGraphics();
+                    g2d.drawImage(source, 0, 0, null);
+                    g2d.dispose();
+
+                    step(40, "Embedding " + chars.length + " characters...");
+                    RingBufferTraceSink trace = new RingBufferTraceSink(TRACE_CAPACITY);
+                    new DWM2Engine(trace).embed(PixelRaster.of(result), watermark, timestamp, key);
+
+                    step(70, "Writing log...");
+                    logEmbedTrace(trace, chars, watermark.length(), baseOffsetX, hopDistanceY);
+
+                    step(90, "Building preview...");
+                    imagePreview = previewIcon(result);
+                    return result;
                 }
 
-                int x = currentPixel % 256;
-                int y = currentPixel / 256;
-
-                // Get original pixel
-                int originalRGB = watermarkedImage.getRGB(x, y);
-                int originalR = (originalRGB >> 16) & 0xFF;
-                int originalG = (originalRGB >> 8) & 0xFF;
-                int originalB = originalRGB & 0xFF;
-
-                // Embed character in LSBs (using 8 bits across RGB: R=3, G=3, B=2)
-                String binary = String.format("%8s", Integer.toBinaryString(ascii)).replace(' ', '0');
-
-                int redBits = Integer.parseInt(binary.substring(0, 3), 2);
-                int greenBits = Integer.parseInt(binary.substring(3, 6), 2);
-                int blueBits = Integer.parseInt(binary.substring(6, 8), 2);
-
-                int newR = (originalR & 0xF8) | redBits;
-                int newG = (originalG & 0xF8) | greenBits;
-                int newB = (originalB & 0xFC) | blueBits;
+                @Override
+                protected void succeeded(BufferedImage result) {
+                    watermarkedImage = result;
 
-                int newRGB = (newR << 16) | (newG << 8) | newB;
-                watermarkedImage.setRGB(x, y, newRGB);
+                    log("  Total characters embedded: " + chars.length);
+                    log("  Embedded string: \"" + new String(chars) + "\"");
 
-                log(String.format("    Binary: %s -> R:%s G:%s B:%s",
-                        binary, binary.substring(0, 3), binary.substring(3, 6), binary.substring(6, 8)));
-                log(String.format("    RGB: (%d,%d,%d) -> (%d,%d,%d)",
-                        originalR, originalG, originalB, newR, newG, newB));
-            }
+                    // Update display
+                    imageLabel.setIcon(imagePreview);
 
-            log("  Total characters embedded: " + chars.length);
-            log("  Embedded string: \"" + new String(chars) + "\"");
+                    extractButton.setEnabled(true);
+                    saveImageButton.setEnabled(true);
+                    statusLabel.setText("Status: Watermark embedded successfully");
+                    log("=== EMBEDDING COMPLETED ===\n");
 
-            // Update display
-            ImageIcon icon = new ImageIcon(watermarkedImage.getScaledInstance(256, 256, Image.SCALE_SMOOTH));
-            imageLabel.setIcon(icon);
+                    JOptionPane.showMessageDialog(DWM2.this,
+                            "Watermark embedded successfully!\n" +
+                                    "Characters embedded: " + chars.length + " (including '*' marker)\n" +
+                                    "X (First 12 bytes XOR): " + baseOffsetX + "\n" +
+                                    "Y (Last 4 bytes XOR / hop): " + hopDistanceY + "\n" +
+                                    "Embedded string: \"" + new String(chars) + "\"",
+                            "Success", JOptionPane.INFORMATION_MESSAGE);
+                }
 
-            extractButton.setEnabled(true);
-            saveImageButton.setEnabled(true);
-            statusLabel.setText("Status: Watermark embedded successfully");
-            log("=== EMBEDDING COMPLETED ===\n");
+                @Override
+                protected void failed(Throwable error) {
+                    JOptionPane.showMessageDialog(DWM2.this, "Error embedding watermark: " + error.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    error.printStackTrace();
+                }
 
-            JOptionPane.showMessageDialog(this,
-                    "Watermark embedded successfully!\n" +
-                            "Characters embedded: " + chars.length + " (including '*' marker)\n" +
-                            "X (First 12 bytes XOR): " + baseOffsetX + "\n" +
-                            "Y (Last 4 bytes XOR / hop): " + hopDistanceY + "\n" +
-                            "Embedded string: \"" + new String(chars) + "\"",
-                    "Success", JOptionPane.INFORMATION_MESSAGE);
+                @Override
+                protected void cancelled() {
+                    statusLabel.setText("Status: Embedding cancelled");
+                    log("=== EMBEDDING CANCELLED ===\n");
+                }
+            }.start(actionButtons());
 
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Error embedding watermark: " + ex.getMessage(),
@@ -483,9 +401,10 @@ public class DWM2 extends JFrame {
             log("Password: \"" + password + "\"");
 
             // Step 1: Calculate MD5 hash of password and XOR calculations
-            String passwordMD5Hash = calculateMD5Hash(password);
-            int baseOffsetX = calculateXORFirst12Bytes(passwordMD5Hash);
-            int hopDistanceY = calculateXORLast4Bytes(passwordMD5Hash);
+            String passwordMD5Hash = HashUtils.toHex(HashUtils.getMD5Hash(password));
+            KeySchedule key = KeySchedule.forDwm2(password);
+            int baseOffsetX = key.getBaseOffset();
+            int hopDistanceY = key.getHopDistance();
 
             log("Step 1 - Password MD5 Hash and XOR calculations:");
             log("  Password MD5 Hash: " + passwordMD5Hash);
@@ -495,129 +414,167 @@ public class DWM2 extends JFrame {
             // Step 2: Extract characters following the new position flow
             log("Step 2 - Character extraction with new position flow:");
 
-            StringBuilder extractedText = new StringBuilder();
-            int currentPosition = baseOffsetX;
-            int charIndex = 0;
-
-            boolean foundDelimiter = false;
-
-            while (extractedText.length() < 100) { // Safety limit
-                int ascii;
-                int currentPixel;
-
-                if (charIndex == 0) {
-                    // Position 0: Extract '*' marker at X
-                    currentPixel = currentPosition % (256 * 256);
-                } else if (charIndex == 1) {
-                    // Position 1: X + Y, extract first watermark char
-                    currentPosition += hopDistanceY;
-                    currentPixel = currentPosition % (256 * 256);
-                } else if (!foundDelimiter) {
-                    // Before delimiter: prev + ASCII of previous extracted char
-                    int prevChar = (int) extractedText.charAt(charIndex - 1);
-                    currentPosition += prevChar;
-                    currentPixel = currentPosition % (256 * 256);
-                } else {
-                    // After '#' delimiter: hop by X for timestamp and end marker
-                    currentPosition += baseOffsetX;
-                    currentPixel = currentPosition % (256 * 256);
+            new BackgroundTask<String>(this, "Extracting watermark") {
+                @Override
+                protected String work() {
+                    step(0, "Reading watermark...");
+                    PixelRaster raster = PixelRaster.of(imageToExtractFrom);
+                    RingBufferTraceSink trace = new RingBufferTraceSink(TRACE_CAPACITY);
+                    String fullExtracted = new DWM2Engine(trace).extract(raster, key);
+
+                    step(50, "Writing log...");
+                    logExtractTrace(trace, raster.getWidth());
+
+                    if (fullExtracted.endsWith(DWM2Engine.END_MARKER)) {
+                        log("  -> Found END marker '#@'");
+                    } else {
+                        log("  -> Safety limit reached, stopping extraction");
+                    }
+                    return fullExtracted;
+                }
+
+                @Override
+                protected void succeeded(String fullExtracted) {
+                    showExtracted(fullExtracted, baseOffsetX, hopDistanceY);
+                }
+
+                @Override
+                protected void failed(Throwable error) {
+                    JOptionPane.showMessageDialog(DWM2.this, "Error extracting watermark: " + error.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    error.printStackTrace();
+                }
+
+                @Override
+                protected void cancelled() {
+                    statusLabel.setText("Status: Extraction cancelled");
+                    log("=== EXTRACTION CANCELLED ===\n");
                 }
+            }.start(actionButtons());
 
-                int x = currentPixel % 256;
-                int y = currentPixel / 256;
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error extracting watermark: " + ex.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            ex.printStackTrace();
+        }
+    }
 
-                int rgb = imageToExtractFrom.getRGB(x, y);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
+    // Split a raw extracted string into watermark and timestamp and report them
+    private void showExtracted(String fullExtracted, int baseOffsetX, int hopDistanceY) {
+        // Step 3: Validate extracted watermark
+        log("Step 3 - Full extracted string: \"" + fullExtracted + "\"");
 
-                // Extract LSBs
-                String redBits = String.format("%3s", Integer.toBinaryString(r & 0x07)).replace(' ', '0');
-                String greenBits = String.format("%3s", Integer.toBinaryString(g & 0x07)).replace(' ', '0');
-                String blueBits = String.format("%2s", Integer.toBinaryString(b & 0x03)).replace(' ', '0');
+        if (!fullExtracted.endsWith("#@")) {
+            JOptionPane.showMessageDialog(this, "No valid watermark found with the given input!",
+                    "Extraction Failed", JOptionPane.ERROR_MESSAGE);
+            log("ERROR: End marker '#@' not found!");
+            return;
+        }
 
-                String binaryChar = redBits + greenBits + blueBits;
-                ascii = Integer.parseInt(binaryChar, 2);
-                char extractedChar = (char) ascii;
+        // Remove end marker
+        String extractedContent = fullExtracted.substring(0, fullExtracted.length() - 2);
 
-                log(String.format("  Pos %d: Pixel %d (x:%d, y:%d): RGB(%d,%d,%d) -> LSBs: %s -> ASCII: %d -> '%c'",
-                        charIndex, currentPixel, x, y, r, g, b, binaryChar, ascii,
-                        (ascii >= 32 && ascii <= 126) ? extractedChar : '?'));
+        // Remove the '*' marker from the beginning
+        if (extractedContent.length() > 0 && extractedContent.charAt(0) == '*') {
+            extractedContent = extractedContent.substring(1);
+        }
 
-                extractedText.append(extractedChar);
+        // Split using '#' delimiter
+        String[] parts = extractedContent.split("#", 2);
+        if (parts.length < 2) {
+            log("ERROR: Delimiter '#' not found in extracted content!");
+            JOptionPane.showMessageDialog(this, "Invalid watermark structure - delimiter not found!",
+                    "Extraction Failed", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
 
-                // Check if we just extracted the '#' delimiter
-                if (extractedChar == '#' && !foundDelimiter && charIndex > 1) {
-                    foundDelimiter = true;
-                    log("  -> Found delimiter '#', switching to X-hop positioning");
-                }
+        String extractedWatermark = parts[0];
+        String extractedTimestamp = parts[1];
 
-                // Check for end marker
-                if (extractedText.toString().endsWith("#@")) {
-                    log("  -> Found END marker '#@'");
-                    break;
-                }
+        log("Step 4 - Extracted components:");
+        log("  Watermark: \"" + extractedWatermark + "\"");
+        log("  Timestamp: \"" + extractedTimestamp + "\"");
+        log("=== EXTRACTION COMPLETED ===\n");
 
-                charIndex++;
+        String message = "Extraction Results:\n\n" +
+                "Extracted Watermark: \"" + extractedWatermark + "\"\n" +
+                "Extracted Timestamp: \"" + extractedTimestamp + "\"\n\n" +
+                "X (First 12 bytes XOR): " + baseOffsetX + "\n" +
+                "Y (Last 4 bytes XOR / hop): " + hopDistanceY;
 
-                // Safety check
-                if (charIndex > 50) {
-                    log("  -> Safety limit reached, stopping extraction");
-                    break;
-                }
-            }
+        JOptionPane.showMessageDialog(this, message, "Extraction Successful",
+                JOptionPane.INFORMATION_MESSAGE);
 
-            // Step 3: Validate extracted watermark
-            String fullExtracted = extractedText.toString();
-            log("Step 3 - Full extracted string: \"" + fullExtracted + "\"");
+        statusLabel.setText("Status: Watermark extracted successfully!");
+    }
 
-            if (!fullExtracted.endsWith("#@")) {
-                JOptionPane.showMessageDialog(this, "No valid watermark found with the given input!",
-                        "Extraction Failed", JOptionPane.ERROR_MESSAGE);
-                log("ERROR: End marker '#@' not found!");
-                return;
-            }
+    // Step-by-step log of the pixels the engine wrote
+    private void logEmbedTrace(RingBufferTraceSink trace, char[] chars, int watermarkLength, int baseOffsetX,
+                               int hopDistanceY) {
+        logDropped(trace);
+        trace.forEach(new TraceSink() {
+            private int previousPosition;
 
-            // Remove end marker
-            String extractedContent = fullExtracted.substring(0, fullExtracted.length() - 2);
+            @Override
+            public void event(int kind, int i, int position, int pixel, int value, int oldRgb, int newRgb) {
+                char c = (char) value;
+                int ascii = value;
 
-            // Remove the '*' marker from the beginning
-            if (extractedContent.length() > 0 && extractedContent.charAt(0) == '*') {
-                extractedContent = extractedContent.substring(1);
-            }
+                if (i == 0) {
+                    log("  Pos 0: '*' (marker) -> Pixel " + pixel + " (X position)");
+                } else if (i == 1) {
+                    log("  Pos 1: '" + c + "' (ASCII " + ascii + ") -> Pixel " + pixel + " (X + Y = "
+                            + baseOffsetX + " + " + hopDistanceY + " = " + position + ")");
+                } else if (i <= watermarkLength + 1) {
+                    int prevChar = (int) chars[i - 1];
+                    String what = i <= watermarkLength ? "ASCII " + ascii : "delimiter '#', ASCII " + ascii;
+                    log("  Pos " + i + ": '" + c + "' (" + what + ") -> Pixel " + pixel
+                            + " (prev + ASCII(" + chars[i - 1] + ") = " + previousPosition + " + "
+                            + prevChar + " = " + position + ")");
+                } else {
+                    log("  Pos " + i + ": '" + c + "' (ASCII " + ascii + ") -> Pixel " + pixel + " (prev + X = "
+                            + previousPosition + " + " + baseOffsetX + " = " + position + ")");
+                }
+                previousPosition = position;
 
-            // Split using '#' delimiter
-            String[] parts = extractedContent.split("#", 2);
-            if (parts.length < 2) {
-                log("ERROR: Delimiter '#' not found in extracted content!");
-                JOptionPane.showMessageDialog(this, "Invalid watermark structure - delimiter not found!",
-                        "Extraction Failed", JOptionPane.ERROR_MESSAGE);
-                return;
+                String binary = String.format("%8s", Integer.toBinaryString(ascii & 0xFF)).replace(' ', '0');
+                log(String.format("    Binary: %s -> R:%s G:%s B:%s",
+                        binary, binary.substring(0, 3), binary.substring(3, 6), binary.substring(6, 8)));
+                log(String.format("    RGB: (%d,%d,%d) -> (%d,%d,%d)",
+                        (oldRgb >> 16) & 0xFF, (oldRgb >> 8) & 0xFF, oldRgb & 0xFF,
+                        (newRgb >> 16) & 0xFF, (newRgb >> 8) & 0xFF, newRgb & 0xFF));
             }
+        });
+    }
 
-            String extractedWatermark = parts[0];
-            String extractedTimestamp = parts[1];
-
-            log("Step 4 - Extracted components:");
-            log("  Watermark: \"" + extractedWatermark + "\"");
-            log("  Timestamp: \"" + extractedTimestamp + "\"");
-            log("=== EXTRACTION COMPLETED ===\n");
+    // Step-by-step log of the pixels the engine read
+    private void logExtractTrace(RingBufferTraceSink trace, int width) {
+        logDropped(trace);
+        trace.forEach(new TraceSink() {
+            private boolean foundDelimiter;
 
-            String message = "Extraction Results:\n\n" +
-                    "Extracted Watermark: \"" + extractedWatermark + "\"\n" +
-                    "Extracted Timestamp: \"" + extractedTimestamp + "\"\n\n" +
-                    "X (First 12 bytes XOR): " + baseOffsetX + "\n" +
-                    "Y (Last 4 bytes XOR / hop): " + hopDistanceY;
+            @Override
+            public void event(int kind, int index, int position, int pixel, int value, int rgb, int after) {
+                char c = (char) value;
+                int ascii = value;
+                String binaryChar = String.format("%8s", Integer.toBinaryString(ascii)).replace(' ', '0');
 
-            JOptionPane.showMessageDialog(this, message, "Extraction Successful",
-                    JOptionPane.INFORMATION_MESSAGE);
+                log(String.format("  Pos %d: Pixel %d (x:%d, y:%d): RGB(%d,%d,%d) -> LSBs: %s -> ASCII: %d -> '%c'",
+                        index, pixel, pixel % width, pixel / width,
+                        (rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, binaryChar, ascii,
+                        (ascii >= 32 && ascii <= 126) ? c : '?'));
 
-            statusLabel.setText("Status: Watermark extracted successfully!");
+                if (c == DWM2Engine.DELIMITER && !foundDelimiter && index > 1) {
+                    foundDelimiter = true;
+                    log("  -> Found delimiter '#', switching to X-hop positioning");
+                }
+            }
+        });
+    }
 
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Error extracting watermark: " + ex.getMessage(),
-                    "Error", JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace();
+    private void logDropped(RingBufferTraceSink trace) {
+        if (trace.dropped() > 0) {
+            log("  ... " + trace.dropped() + " earlier pixels not shown");
         }
     }
 
@@ -651,11 +608,35 @@ public class DWM2 extends JFrame {
         }
     }
 
+    // Buttons disabled while an embed or extract runs in the background
+    private JButton[] actionButtons() {
+        return new JButton[] { loadImageButton, embedButton, extractButton, saveImageButton };
+    }
+
+    // Callable from a BackgroundTask too; lines are handed to the EDT in order
     private void log(String message) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> log(message));
+            return;
+        }
         logArea.append(message + "\n");
         logArea.setCaretPosition(logArea.getDocument().getLength());
     }
 
+    // Scale the image down to fit the 256x256 preview area, keeping its aspect ratio
+    private static ImageIcon previewIcon(BufferedImage image) {
+        double scale = Math.min(1.0, 256.0 / Math.max(image.getWidth(), image.getHeight()));
+        int w = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int h = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage preview = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = preview.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(image, 0, 0, w, h, null);
+        g2d.dispose();
+        return new ImageIcon(preview);
+    }
+
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
             new DWM2().setVisible(true);
@@ -0,0 +1,122 @@
+// The DWM2 hop-sequence watermark without any UI. The embedded string is
+//   '*' + watermark + '#' + timestamp + "#@"
+// one character per pixel in the 3-3-2 LSBs, at positions
+//   X, X + Y, then + ASCII of the previous character up to and including the
+//   '#' delimiter, then + X for the timestamp and end marker
+// where X and Y come from KeySchedule.forDwm2(password).
+//
+// Nothing is formatted or logged; pass a TraceSink to record every pixel touched
+// (DWM2 uses a ring buffer to print its step-by-step trace afterwards).
+public final class DWM2Engine {
+
+    public static final char MARKER = '*';
+    public static final char DELIMITER = '#';
+    public static final String END_MARKER = "#@";
+
+    // Extraction stops after this many characters if no end marker turns up. DWM2's loop
+    // had two limits, length < 100 and a break once charIndex > 50; the second always
+    // came first, after the 51st character, so 51 is what it actually read.
+    public static final int MAX_EXTRACT_CHARS = 51;
+
+    private final TraceSink trace;
+    private final boolean tracing;
+
+    public DWM2Engine() {
+        this(TraceSink.NONE);
+    }
+
+    public DWM2Engine(TraceSink trace) {
+        this.trace = trace;
+        this.tracing = trace.isEnabled();
+    }
+
+    public void embed(PixelRaster raster, String watermark, String timestamp, KeySchedule key) {
+        int totalPixels = raster.getTotalPixels();
+        long pathEnd = pathEnd(watermark, timestamp, key);
+        if (pathEnd >= totalPixels) {
+            throw new RuntimeException("Image too small: the hop path needs " + (pathEnd + 1)
+                    + " pixels, the image has " + totalPixels + ".");
+        }
+        if (isMarked(raster, key)) {
+            throw new RuntimeException("A watermark with this password already exists at position "
+                    + (key.getBaseOffset() % totalPixels) + ".");
+        }
+
+        char[] chars = (MARKER + watermark + DELIMITER + timestamp + END_MARKER).toCharArray();
+        int baseOffset = key.getBaseOffset();
+        int lastAsciiHop = watermark.length() + 1; // the '#' delimiter is still reached by an ASCII hop
+        int position = baseOffset;
+
+        for (int i = 0; i < chars.length; i++) {
+            if (i == 1) {
+                position += key.getHopDistance();
+            } else if (i > 1) {
+                position += i <= lastAsciiHop ? chars[i - 1] : baseOffset;
+            }
+
+            // pathEnd < totalPixels, so the position never needs wrapping
+            int oldRgb = raster.getRGB(position);
+            int newRgb = LsbKernel.embed(oldRgb, chars[i] & 0xFF);
+            raster.setRGB(position, newRgb);
+
+            if (tracing) {
+                trace.event(TraceSink.EMBED, i, position, position, chars[i], oldRgb, newRgb);
+            }
+        }
+    }
+
+    // Raw characters read along the hop path: '*' + watermark + '#' + timestamp + "#@" when the
+    // password is right, otherwise whatever the LSBs hold, up to MAX_EXTRACT_CHARS
+    public String extract(PixelRaster raster, KeySchedule key) {
+        int totalPixels = raster.getTotalPixels();
+        int baseOffset = key.getBaseOffset();
+
+        char[] text = new char[MAX_EXTRACT_CHARS];
+        int length = 0;
+        int position = baseOffset;
+        boolean foundDelimiter = false;
+
+        while (length < MAX_EXTRACT_CHARS) {
+            if (length == 1) {
+                position += key.getHopDistance();
+            } else if (length > 1) {
+                position += foundDelimiter ? baseOffset : text[length - 1];
+            }
+
+            int pixel = position % totalPixels;
+            int rgb = raster.getRGB(pixel);
+            char c = (char) LsbKernel.extract(rgb);
+
+            if (tracing) {
+                trace.event(TraceSink.EXTRACT, length, position, pixel, c, rgb, rgb);
+            }
+
+            text[length++] = c;
+
+            if (c == DELIMITER && !foundDelimiter && length > 2) {
+                foundDelimiter = true;
+            }
+            if (c == '@' && length > 1 && text[length - 2] == DELIMITER) {
+                break;
+            }
+        }
+
+        return new String(text, 0, length);
+    }
+
+    // Last hop position of the embedded string; it must be below the pixel count
+    public static long pathEnd(String watermark, String timestamp, KeySchedule key) {
+        long end = (long) key.getBaseOffset() + key.getHopDistance();
+        for (int i = 0; i < watermark.length(); i++) {
+            end += watermark.charAt(i);
+        }
+        // Timestamp plus "#@" after the delimiter are reached by X hops
+        return end + (long) (timestamp.length() + END_MARKER.length()) * key.getBaseOffset();
+    }
+
+    // True when position X already carries the '*' marker, i.e. the image was watermarked with this password
+    public static boolean isMarked(PixelRaster raster, KeySchedule key) {
+        int pixel = key.getBaseOffset() % raster.getTotalPixels();
+        return LsbKernel.extract(raster.getRGB(pixel)) == MARKER;
+    }
+}
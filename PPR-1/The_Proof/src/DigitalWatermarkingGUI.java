@@ -7,11 +7,12 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.util.ArrayList;
-import java.util.List;
 import javax.imageio.ImageIO;
 
 public class DigitalWatermarkingGUI extends JFrame {
+    // Pixels kept for the step-by-step log of one embed or extract
+    private static final int TRACE_CAPACITY = 256;
+
     private JTextField watermarkField;
     private JPasswordField passwordField;
     private JTextArea logArea;
@@ -77,7 +78,7 @@ public class DigitalWatermarkingGUI extends JFrame {
 
     private JPanel createImagePanel() {
         JPanel panel = new JPanel(new BorderLayout());
-        panel.setBorder(new TitledBorder("Image Preview (256x256 BMP)"));
+        panel.setBorder(new TitledBorder("Image Preview (BMP)"));
 
         imageLabel = new JLabel("No image loaded", SwingConstants.CENTER);
         imageLabel.setPreferredSize(new Dimension(280, 280));
@@ -110,7 +111,7 @@ public class DigitalWatermarkingGUI extends JFrame {
     private JPanel createButtonPanel() {
         JPanel panel = new JPanel(new FlowLayout());
 
-        loadImageButton = new JButton("Load 256x256 BMP Image");
+        loadImageButton = new JButton("Load BMP Image");
         loadImageButton.addActionListener(this::loadImage);
 
         embedButton = new JButton("Embed Watermark");
@@ -143,15 +144,15 @@ public class DigitalWatermarkingGUI extends JFrame {
                 currentImageFile = fileChooser.getSelectedFile();
                 originalImage = ImageIO.read(currentImageFile);
 
-                if (originalImage.getWidth() != 256 || originalImage.getHeight() != 256) {
+                if (originalImage == null) {
                     JOptionPane.showMessageDialog(this,
-                            "Image must be exactly 256x256 pixels!", "Invalid Image Size",
+                            "Unsupported image file!", "Invalid Image",
                             JOptionPane.ERROR_MESSAGE);
                     return;
                 }
 
                 // Display image
-                ImageIcon icon = new ImageIcon(originalImage.getScaledInstance(256, 256, Image.SCALE_SMOOTH));
+                ImageIcon icon = previewIcon(originalImage);
                 imageLabel.setIcon(icon);
                 imageLabel.setText("");
 
@@ -254,74 +255,96 @@ public class DigitalWatermarkingGUI extends JFrame {
                         chars[i], ascii, binary, redBits, greenBits, blueBits));
             }
 
-            // Step 5: Calculate pixel positions - UPDATED TO START FROM stepSize
-            List<Integer> pixelPositions = new ArrayList<>();
-            int currentPos = stepSize; // Start from stepSize pixel instead of 0
-            log("Step 5 - Pixel Position Calculation:");
-            log("  Starting from pixel: " + stepSize);
-            for (int i = 0; i < chars.length; i++) {
-                pixelPositions.add(currentPos);
-                int x = currentPos % 256;
-                int y = currentPos / 256;
-                log(String.format("  Char %d ('%c'): Pixel %d (x:%d, y:%d)",
-                        i, chars[i], currentPos, x, y));
-                if (i < chars.length - 1) {
-                    currentPos = (currentPos + stepSize) % (256 * 256);
-                }
+            // The hop path starts at stepSize and must not wrap onto pixels it already used
+            KeySchedule key = KeySchedule.forSequentialXor(password);
+            int width = originalImage.getWidth();
+            int totalPixels = width * originalImage.getHeight();
+            if ((long) stepSize * chars.length >= totalPixels) {
+                log("  ERROR: Hop path needs " + ((long) stepSize * chars.length + 1) + " pixels, image has "
+                        + totalPixels);
+                JOptionPane.showMessageDialog(this,
+                        "Image too small for this watermark and password!\n" +
+                                "Maximum watermark length for this image: "
+                                + XorStepEngine.capacity(totalPixels, key) + " characters.",
+                        "Capacity Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
 
-            // Step 6: Create watermarked image and embed
-            watermarkedImage = new BufferedImage(originalImage.getWidth(),
-                    originalImage.getHeight(), originalImage.getType());
-            Graphics2D g2d = watermarkedImage.createGraphics();
-            g2d.drawImage(originalImage, 0, 0, null);
-            g2d.dispose();
-
-            log("Step 6 - LSB Embedding Process:");
-            for (int i = 0; i < chars.length; i++) {
-                int pixelPos = pixelPositions.get(i);
-                int x = pixelPos % 256;
-                int y = pixelPos / 256;
-
-                int originalRGB = watermarkedImage.getRGB(x, y);
-                int originalR = (originalRGB >> 16) & 0xFF;
-                int originalG = (originalRGB >> 8) & 0xFF;
-                int originalB = originalRGB & 0xFF;
-
-                int ascii = (int) chars[i];
-                String binary = String.format("%8s", Integer.toBinaryString(ascii)).replace(' ', '0');
-
-                // Extract LSB bits for embedding
-                int redBits = Integer.parseInt(binary.substring(0, 3), 2);
-                int greenBits = Integer.parseInt(binary.substring(3, 6), 2);
-                int blueBits = Integer.parseInt(binary.substring(6, 8), 2);
+            // Step 5 and 6: Create watermarked image and embed, starting from pixel stepSize.
+            // Copy and embed run in the background; the window's image is only replaced on success.
+            BufferedImage source = originalImage;
+            int startPixel = stepSize;
+            new BackgroundTask<BufferedImage>(this, "Embedding watermark") {
+                // Scaled in the background too, read by succeeded()
+                private ImageIcon imagePreview;
+
+                @Override
+                protected BufferedImage work() {
+                    step(0, "Copying image...");
+                    BufferedImage result = new BufferedImage(source.getWidth(),
+                            source.getHeight(), source.getType());
+                    Graphics2D g2d = result.createGraphics();
+                    g2d.drawImage(source, 0, 0, null);
+                    g2d.dispose();
+
+                    step(40, "Embedding " + chars.length + " characters...");
+                    RingBufferTraceSink trace = new RingBufferTraceSink(TRACE_CAPACITY);
+                    new XorStepEngine(trace).embed(PixelRaster.of(result), watermark, key);
+
+                    step(70, "Writing log...");
+                    log("Step 5 - Pixel Position Calculation:");
+                    log("  Starting from pixel: " + startPixel);
+                    logDropped(trace);
+                    trace.forEach((kind, i, position, pixel, value, before, after) ->
+                            log(String.format("  Char %d ('%c'): Pixel %d (x:%d, y:%d)",
+                                    i, (char) value, pixel, pixel % width, pixel / width)));
+
+                    log("Step 6 - LSB Embedding Process:");
+                    logDropped(trace);
+                    trace.forEach((kind, i, position, pixel, value, before, after) -> {
+                        String binary = String.format("%8s", Integer.toBinaryString(value & 0xFF)).replace(' ', '0');
+                        log(String.format("  Pixel %d: RGB(%d,%d,%d) -> RGB(%d,%d,%d) [Changed: R:%s G:%s B:%s]",
+                                pixel, (before >> 16) & 0xFF, (before >> 8) & 0xFF, before & 0xFF,
+                                (after >> 16) & 0xFF, (after >> 8) & 0xFF, after & 0xFF,
+                                binary.substring(0, 3), binary.substring(3, 6), binary.substring(6, 8)));
+                    });
+
+                    step(90, "Building preview...");
+                    imagePreview = previewIcon(result);
+                    return result;
+                }
 
-                // Modify LSBs
-                int newR = (originalR & 0xF8) | redBits; // Clear last 3 bits, set new ones
-                int newG = (originalG & 0xF8) | greenBits; // Clear last 3 bits, set new ones
-                int newB = (originalB & 0xFC) | blueBits; // Clear last 2 bits, set new ones
+                @Override
+                protected void succeeded(BufferedImage result) {
+                    watermarkedImage = result;
 
-                int newRGB = (newR << 16) | (newG << 8) | newB;
-                watermarkedImage.setRGB(x, y, newRGB);
+                    // Update display
+                    imageLabel.setIcon(imagePreview);
 
-                log(String.format("  Pixel %d: RGB(%d,%d,%d) -> RGB(%d,%d,%d) [Changed: R:%s G:%s B:%s]",
-                        pixelPos, originalR, originalG, originalB, newR, newG, newB,
-                        binary.substring(0, 3), binary.substring(3, 6), binary.substring(6, 8)));
-            }
+                    extractButton.setEnabled(true);
+                    saveImageButton.setEnabled(true);
+                    statusLabel.setText("Status: Watermark embedded successfully");
+                    log("=== EMBEDDING COMPLETED ===\n");
 
-            // Update display
-            ImageIcon icon = new ImageIcon(watermarkedImage.getScaledInstance(256, 256, Image.SCALE_SMOOTH));
-            imageLabel.setIcon(icon);
+                    JOptionPane.showMessageDialog(DigitalWatermarkingGUI.this, "Watermark embedded successfully!\n" +
+                            "Total characters embedded: " + chars.length + "\n" +
+                            "Step size (XOR): " + startPixel + "\n" +
+                            "Starting pixel: " + startPixel, "Success", JOptionPane.INFORMATION_MESSAGE);
+                }
 
-            extractButton.setEnabled(true);
-            saveImageButton.setEnabled(true);
-            statusLabel.setText("Status: Watermark embedded successfully");
-            log("=== EMBEDDING COMPLETED ===\n");
+                @Override
+                protected void failed(Throwable error) {
+                    JOptionPane.showMessageDialog(DigitalWatermarkingGUI.this,
+                            "Error embedding watermark: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    error.printStackTrace();
+                }
 
-            JOptionPane.showMessageDialog(this, "Watermark embedded successfully!\n" +
-                    "Total characters embedded: " + chars.length + "\n" +
-                    "Step size (XOR): " + stepSize + "\n" +
-                    "Starting pixel: " + stepSize, "Success", JOptionPane.INFORMATION_MESSAGE);
+                @Override
+                protected void cancelled() {
+                    statusLabel.setText("Status: Embedding cancelled");
+                    log("=== EMBEDDING CANCELLED ===\n");
+                }
+            }.start(actionButtons());
 
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Error embedding watermark: " + ex.getMessage(),
@@ -360,129 +383,134 @@ public class DigitalWatermarkingGUI extends JFrame {
             log("Step 2 - Sequential XOR Calculation:");
             log("  Hex String: " + hashHex);
 
-            int stepSize = 0;
-            boolean firstByte = true;
-
-            for (int i = 0; i < hashHex.length(); i += 2) {
-                String hexPair = hashHex.substring(i, i + 2);
-                int byteValue = Integer.parseInt(hexPair, 16);
-
-                if (firstByte) {
-                    stepSize = byteValue;
-                    firstByte = false;
-                } else {
-                    stepSize = stepSize ^ byteValue;
-                }
-            }
-
-            if (stepSize == 0) {
-                stepSize = 1;
-            }
+            KeySchedule key = KeySchedule.forSequentialXor(password);
+            int stepSize = key.getStep();
 
             log("  Final XOR Step Size: " + stepSize);
 
-            // Step 3: Extract characters - UPDATED TO START FROM stepSize
-            StringBuilder extractedText = new StringBuilder();
-            int currentPos = stepSize; // Start from stepSize pixel instead of 0
-            boolean foundStart = false;
-            int charIndex = 0;
+            // Step 3: Extract characters, starting from pixel stepSize
+            PixelRaster raster = PixelRaster.of(imageToExtractFrom);
+            int width = raster.getWidth();
 
             log("Step 3 - Character Extraction:");
             log("  Starting extraction from pixel: " + stepSize);
 
-            // Extract until we find the end marker or reach reasonable limit
-            while (extractedText.length() < 100) { // Safety limit
-                int x = currentPos % 256;
-                int y = currentPos / 256;
+            new BackgroundTask<String>(this, "Extracting watermark") {
+                @Override
+                protected String work() {
+                    step(0, "Reading watermark...");
+                    RingBufferTraceSink trace = new RingBufferTraceSink(TRACE_CAPACITY);
+                    String fullExtracted = new XorStepEngine(trace).extract(raster, key);
 
-                int rgb = imageToExtractFrom.getRGB(x, y);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
+                    step(50, "Writing log...");
+                    logExtractTrace(trace, width);
+                    return fullExtracted;
+                }
 
-                // Extract LSBs
-                String redBits = String.format("%3s", Integer.toBinaryString(r & 0x07)).replace(' ', '0');
-                String greenBits = String.format("%3s", Integer.toBinaryString(g & 0x07)).replace(' ', '0');
-                String blueBits = String.format("%2s", Integer.toBinaryString(b & 0x03)).replace(' ', '0');
+                @Override
+                protected void succeeded(String fullExtracted) {
+                    showExtracted(fullExtracted, stepSize);
+                }
 
-                String binaryChar = redBits + greenBits + blueBits;
-                int ascii = Integer.parseInt(binaryChar, 2);
-                char extractedChar = (char) ascii;
+                @Override
+                protected void failed(Throwable error) {
+                    JOptionPane.showMessageDialog(DigitalWatermarkingGUI.this,
+                            "Error extracting watermark: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    error.printStackTrace();
+                }
 
-                log(String.format("  Pixel %d (x:%d, y:%d): RGB(%d,%d,%d) -> LSBs: %s -> ASCII: %d -> '%c'",
-                        currentPos, x, y, r, g, b, binaryChar, ascii,
-                        (ascii >= 32 && ascii <= 126) ? extractedChar : '?'));
+                @Override
+                protected void cancelled() {
+                    statusLabel.setText("Status: Extraction cancelled");
+                    log("=== EXTRACTION CANCELLED ===\n");
+                }
+            }.start(actionButtons());
 
-                extractedText.append(extractedChar);
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error extracting watermark: " + ex.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            ex.printStackTrace();
+        }
+    }
 
-                // Check for start and end markers
-                String current = extractedText.toString();
-                if (!foundStart && current.contains("@@")) {
-                    foundStart = true;
-                    log("  -> Found START marker '@@'");
-                }
+    // Pull the watermark out from between the markers and compare it with the watermark field
+    private void showExtracted(String fullExtracted, int stepSize) {
+        // Step 4: Validate and extract watermark
+        log("Step 4 - Full Extracted String: \"" + fullExtracted + "\"");
 
-                if (foundStart && current.contains("#@")) {
-                    log("  -> Found END marker '#@'");
-                    break;
-                }
+        if (!fullExtracted.startsWith("@@")) {
+            JOptionPane.showMessageDialog(this, "Wrong password or no watermark found!",
+                    "Extraction Failed", JOptionPane.ERROR_MESSAGE);
+            log("ERROR: Start marker '@@' not found!");
+            return;
+        }
 
-                currentPos = (currentPos + stepSize) % (256 * 256);
-                charIndex++;
+        int startIndex = fullExtracted.indexOf("@@") + 2;
+        int endIndex = fullExtracted.indexOf("#@");
 
-                // Safety check
-                if (charIndex > 60) { // More than reasonable for 50 char + delimiters
-                    log("  -> Safety limit reached, stopping extraction");
-                    break;
-                }
-            }
+        if (endIndex == -1 || endIndex < startIndex) {
+            JOptionPane.showMessageDialog(this, "Wrong password or corrupted watermark!",
+                    "Extraction Failed", JOptionPane.ERROR_MESSAGE);
+            log("ERROR: End marker '#@' not found or invalid position!");
+            return;
+        }
 
-            // Step 4: Validate and extract watermark
-            String fullExtracted = extractedText.toString();
-            log("Step 4 - Full Extracted String: \"" + fullExtracted + "\"");
+        String extractedWatermark = fullExtracted.substring(startIndex, endIndex);
+        log("Step 5 - Extracted Watermark: \"" + extractedWatermark + "\"");
+        log("=== EXTRACTION COMPLETED ===\n");
 
-            if (!fullExtracted.startsWith("@@")) {
-                JOptionPane.showMessageDialog(this, "Wrong password or no watermark found!",
-                        "Extraction Failed", JOptionPane.ERROR_MESSAGE);
-                log("ERROR: Start marker '@@' not found!");
-                return;
-            }
+        // Compare with original
+        String originalWatermark = watermarkField.getText().trim();
+        boolean matches = extractedWatermark.equals(originalWatermark);
 
-            int startIndex = fullExtracted.indexOf("@@") + 2;
-            int endIndex = fullExtracted.indexOf("#@");
+        String message = "Extraction Results:\n\n" +
+                "Extracted Watermark: \"" + extractedWatermark + "\"\n" +
+                "Original Watermark: \"" + originalWatermark + "\"\n" +
+                "Match: " + (matches ? "YES ✓" : "NO ✗") + "\n\n" +
+                "Step Size Used: " + stepSize + "\n" +
+                "Starting Pixel: " + stepSize;
 
-            if (endIndex == -1 || endIndex < startIndex) {
-                JOptionPane.showMessageDialog(this, "Wrong password or corrupted watermark!",
-                        "Extraction Failed", JOptionPane.ERROR_MESSAGE);
-                log("ERROR: End marker '#@' not found or invalid position!");
-                return;
-            }
+        JOptionPane.showMessageDialog(this, message,
+                matches ? "Extraction Successful" : "Extraction Warning",
+                matches ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
 
-            String extractedWatermark = fullExtracted.substring(startIndex, endIndex);
-            log("Step 5 - Extracted Watermark: \"" + extractedWatermark + "\"");
-            log("=== EXTRACTION COMPLETED ===\n");
+        statusLabel.setText("Status: Watermark extracted - " + (matches ? "Match!" : "No match"));
+    }
 
-            // Compare with original
-            String originalWatermark = watermarkField.getText().trim();
-            boolean matches = extractedWatermark.equals(originalWatermark);
+    // Step-by-step log of the pixels the engine read, with the marker checks it made
+    private void logExtractTrace(RingBufferTraceSink trace, int width) {
+        logDropped(trace);
+        trace.forEach(new TraceSink() {
+            private final StringBuilder text = new StringBuilder();
+            private boolean foundStart;
 
-            String message = "Extraction Results:\n\n" +
-                    "Extracted Watermark: \"" + extractedWatermark + "\"\n" +
-                    "Original Watermark: \"" + originalWatermark + "\"\n" +
-                    "Match: " + (matches ? "YES ✓" : "NO ✗") + "\n\n" +
-                    "Step Size Used: " + stepSize + "\n" +
-                    "Starting Pixel: " + stepSize;
+            @Override
+            public void event(int kind, int index, int position, int pixel, int value, int rgb, int after) {
+                char c = (char) value;
+                String binaryChar = String.format("%8s", Integer.toBinaryString(value)).replace(' ', '0');
 
-            JOptionPane.showMessageDialog(this, message,
-                    matches ? "Extraction Successful" : "Extraction Warning",
-                    matches ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+                log(String.format("  Pixel %d (x:%d, y:%d): RGB(%d,%d,%d) -> LSBs: %s -> ASCII: %d -> '%c'",
+                        pixel, pixel % width, pixel / width,
+                        (rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, binaryChar, value,
+                        (value >= 32 && value <= 126) ? c : '?'));
 
-            statusLabel.setText("Status: Watermark extracted - " + (matches ? "Match!" : "No match"));
+                text.append(c);
+                if (!foundStart && text.indexOf(XorStepEngine.START_MARKER) >= 0) {
+                    foundStart = true;
+                    log("  -> Found START marker '@@'");
+                }
+                if (foundStart && text.indexOf(XorStepEngine.END_MARKER) >= 0) {
+                    log("  -> Found END marker '#@'");
+                } else if (text.length() == XorStepEngine.MAX_EXTRACT_CHARS) {
+                    log("  -> Safety limit reached, stopping extraction");
+                }
+            }
+        });
+    }
 
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Error extracting watermark: " + ex.getMessage(),
-                    "Error", JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace();
+    private void logDropped(RingBufferTraceSink trace) {
+        if (trace.dropped() > 0) {
+            log("  ... " + trace.dropped() + " earlier pixels not shown");
         }
     }
 
@@ -516,7 +544,17 @@ public class DigitalWatermarkingGUI extends JFrame {
         }
     }
 
+    // Buttons disabled while an embed or extract runs in the background
+    private JButton[] actionButtons() {
+        return new JButton[] { loadImageButton, embedButton, extractButton, saveImageButton };
+    }
+
+    // Callable from a BackgroundTask too; lines are handed to the EDT in order
     private void log(String message) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> log(message));
+            return;
+        }
         logArea.append(message + "\n");
         logArea.setCaretPosition(logArea.getDocument().getLength());
     }
@@ -562,6 +600,20 @@ public class DigitalWatermarkingGUI extends JFrame {
         }
     }
 
+    // Scale the image down to fit the 256x256 preview area, keeping its aspect ratio
+    private static ImageIcon previewIcon(BufferedImage image) {
+        double scale = Math.min(1.0, 256.0 / Math.max(image.getWidth(), image.getHeight()));
+        int w = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int h = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage preview = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = preview.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(image, 0, 0, w, h, null);
+        g2d.dispose();
+        return new ImageIcon(preview);
+    }
+
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
             new DigitalWatermarkingGUI().setVisible(true);
@@ -0,0 +1,84 @@
+// In-place iterative radix-2 FFT of one fixed power-of-two size. The twiddle
+// factors and the bit-reversal permutation are computed once per instance, so a
+// streaming engine allocates nothing per frame.
+//
+// Real signals are cheapest transformed two at a time: put one in re[] and the
+// other in im[], and split the spectrum with the conjugate symmetry of each.
+public final class Fft {
+
+    private final int size;
+    private final int[] reversed;
+    private final double[] cos;
+    private final double[] sin;
+
+    public Fft(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+        }
+        this.size = size;
+
+        int bits = Integer.numberOfTrailingZeros(size);
+        reversed = new int[size];
+        for (int i = 0; i < size; i++) {
+            reversed[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+
+        cos = new double[size / 2];
+        sin = new double[size / 2];
+        for (int i = 0; i < size / 2; i++) {
+            double angle = -2 * Math.PI * i / size;
+            cos[i] = Math.cos(angle);
+            sin[i] = Math.sin(angle);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void forward(double[] re, double[] im) {
+        transform(re, im, 1);
+    }
+
+    // Inverse transform, scaled by 1 / size so that inverse(forward(x)) == x
+    public void inverse(double[] re, double[] im) {
+        transform(re, im, -1);
+        double scale = 1.0 / size;
+        for (int i = 0; i < size; i++) {
+            re[i] *= scale;
+            im[i] *= scale;
+        }
+    }
+
+    private void transform(double[] re, double[] im, int direction) {
+        for (int i = 0; i < size; i++) {
+            int j = reversed[i];
+            if (j > i) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        for (int half = 1; half < size; half <<= 1) {
+            int stride = size / (2 * half);
+            for (int start = 0; start < size; start += 2 * half) {
+                for (int k = 0; k < half; k++) {
+                    double wr = cos[k * stride];
+                    double wi = direction * sin[k * stride];
+                    int a = start + k;
+                    int b = a + half;
+                    double tr = re[b] * wr - im[b] * wi;
+                    double ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// The frames the AudioWatermark hop path visits, worked out once per watermark
+// and file: character i of the embedded string lives at frame(i). Positions are
+// already wrapped at the recording's length and folded into its first half when
+// they land past the frames a windowed buffer holds, so embedding and extraction
+// only look the frame up.
+//
+// Indexes are kept in a bounded LRU cache keyed by watermark, base offset,
+// recording length and window, so verifying the same file again - or another
+// file of the same length - skips the arithmetic altogether.
+public final class HopIndex {
+
+    private static final int CACHE_SIZE = 64;
+
+    private static final Map<Key, HopIndex> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, HopIndex> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final int[] frames;
+
+    private HopIndex(int[] frames) {
+        this.frames = frames;
+    }
+
+    // Index of at least length positions (never fewer than AudioWatermarkEngine.MAX_EXTRACT_CHARS, so
+    // one index serves embed and extract) for a recording of totalFrames frames of which the first
+    // availableFrames are at hand
+    public static HopIndex of(String watermark, int baseOffset, int totalFrames, int availableFrames, int length) {
+        if (watermark.isEmpty()) {
+            throw new IllegalArgumentException("Watermark cannot be empty");
+        }
+        if (totalFrames <= 0 || availableFrames <= 0) {
+            throw new IllegalArgumentException("No audio frames to watermark");
+        }
+
+        Key key = new Key(watermark, baseOffset, totalFrames, availableFrames);
+        synchronized (CACHE) {
+            HopIndex cached = CACHE.get(key);
+            if (cached != null && cached.frames.length >= length) {
+                return cached;
+            }
+        }
+
+        HopIndex index = build(watermark, baseOffset, totalFrames, availableFrames,
+                Math.max(length, AudioWatermarkEngine.MAX_EXTRACT_CHARS));
+        synchronized (CACHE) {
+            CACHE.put(key, index);
+        }
+        return index;
+    }
+
+    // Frame holding character i
+    public int frame(int i) {
+        return frames[i];
+    }
+
+    public int length() {
+        return frames.length;
+    }
+
+    // The first length frames, as a new array
+    public int[] toArray(int length) {
+        int[] copy = new int[length];
+        System.arraycopy(frames, 0, copy, 0, length);
+        return copy;
+    }
+
+    // Hops by each watermark character in turn, then by the last one
+    private static HopIndex build(String watermark, int baseOffset, int totalFrames, int availableFrames,
+                                  int length) {
+        int lastHop = watermark.charAt(watermark.length() - 1);
+        int[] frames = new int[length];
+        long position = baseOffset;
+        for (int i = 0; i < length; i++) {
+            position += i < watermark.length() ? watermark.charAt(i) : lastHop;
+            int frame = (int) (position % totalFrames);
+            if (frame >= availableFrames) {
+                frame %= totalFrames / 2;
+            }
+            frames[i] = frame;
+        }
+        return new HopIndex(frames);
+    }
+
+    private static final class Key {
+        private final String watermark;
+        private final int baseOffset;
+        private final int totalFrames;
+        private final int availableFrames;
+
+        Key(String watermark, int baseOffset, int totalFrames, int availableFrames) {
+            this.watermark = watermark;
+            this.baseOffset = baseOffset;
+            this.totalFrames = totalFrames;
+            this.availableFrames = availableFrames;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && watermark.equals(other.watermark) && baseOffset == other.baseOffset
+                    && totalFrames == other.totalFrames && availableFrames == other.availableFrames;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((watermark.hashCode() * 31 + baseOffset) * 31 + totalFrames) * 31 + availableFrames;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+// Embeds the AudioWatermark LSB mark into samples on their way to an AudioSink,
+// one small block at a time, so live or broadcast output is marked with no pass
+// over the whole recording first. The hop path is worked out up front
+// (AudioWatermarkEngine.pathFrames); each block then gets the path frames that
+// fall inside it, through a NibbleCodec over the block. The output is
+// byte-for-byte what embedding the whole file in place would give.
+//
+// A block of DEFAULT_BLOCK_FRAMES is about 5 ms at 48 kHz: the delay added is
+// reading one block plus marking it, which getMaxMarkNanos() reports. An empty
+// watermark streams the samples unchanged, for plain playback.
+public final class LiveWatermarker {
+
+    public static final int DEFAULT_BLOCK_FRAMES = 256;
+
+    private final int channels;
+    private final int formatTag;
+    private final int bitsPerSample;
+    private final int validBitsPerSample;
+    private final int blockAlign;
+    private final int blockFrames;
+
+    // Path frames in ascending order, with the character each gets
+    private final int[] frames;
+    private final int[] values;
+
+    private long blocks;
+    private long totalMarkNanos;
+    private long maxMarkNanos;
+
+    // totalFrames is the length of the recording, or Integer.MAX_VALUE for a stream of unknown length
+    public LiveWatermarker(int channels, int formatTag, int bitsPerSample, int validBitsPerSample,
+                           String watermark, String timestamp, int totalFrames, int blockFrames) {
+        if (blockFrames < 1) {
+            throw new IllegalArgumentException("Block must hold at least one frame: " + blockFrames);
+        }
+        // Fail on an unsupported format before anything is played
+        NibbleCodec.of(ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN), channels, formatTag,
+                bitsPerSample, validBitsPerSample);
+
+        this.channels = channels;
+        this.formatTag = formatTag;
+        this.bitsPerSample = bitsPerSample;
+        this.validBitsPerSample = validBitsPerSample;
+        this.blockAlign = channels * bitsPerSample / 8;
+        this.blockFrames = blockFrames;
+
+        if (watermark.isEmpty()) {
+            frames = new int[0];
+            values = new int[0];
+            return;
+        }
+
+        // Sort the writes by frame; a stable sort keeps the last write to a frame last
+        String text = watermark + timestamp + AudioWatermarkEngine.END_MARKER;
+        int baseOffset = KeySchedule.forAudio(watermark).getBaseOffset();
+        int[] path = AudioWatermarkEngine.pathFrames(watermark, timestamp, baseOffset, totalFrames);
+        long[] order = new long[path.length];
+        for (int i = 0; i < path.length; i++) {
+            order[i] = (long) path[i] << 32 | i;
+        }
+        Arrays.sort(order);
+        frames = new int[path.length];
+        values = new int[path.length];
+        for (int i = 0; i < order.length; i++) {
+            frames[i] = (int) (order[i] >>> 32);
+            values[i] = text.charAt((int) order[i]) & 0xFF;
+        }
+    }
+
+    public static LiveWatermarker forWav(WavFile wav, String watermark, String timestamp, int blockFrames) {
+        return new LiveWatermarker(wav.getChannels(), wav.getFormatTag(), wav.getBitsPerSample(),
+                wav.getValidBitsPerSample(), watermark, timestamp,
+                (int) Math.min(Integer.MAX_VALUE, wav.getFrameCount()), blockFrames);
+    }
+
+    // Reads dataSize bytes of samples from in and writes them, marked, to sink in blocks. progress
+    // gets the number of bytes written so far after every block; an exception it throws stops the
+    // stream. The sink is left open.
+    public void stream(ReadableByteChannel in, long dataSize, AudioSink sink, LongConsumer progress)
+            throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(blockFrames * blockAlign).order(ByteOrder.LITTLE_ENDIAN);
+        NibbleCodec codec = NibbleCodec.of(block, channels, formatTag, bitsPerSample, validBitsPerSample);
+
+        long written = 0;
+        long firstFrame = 0;
+        int next = 0;
+        while (written < dataSize) {
+            int length = (int) Math.min(block.capacity(), dataSize - written);
+            fill(in, block, length);
+
+            long start = System.nanoTime();
+            // A trailing partial frame is passed through untouched
+            long endFrame = firstFrame + length / blockAlign;
+            while (next < frames.length && frames[next] < endFrame) {
+                codec.encode((int) (frames[next] - firstFrame), values[next]);
+                next++;
+            }
+            long elapsed = System.nanoTime() - start;
+            blocks++;
+            totalMarkNanos += elapsed;
+            maxMarkNanos = Math.max(maxMarkNanos, elapsed);
+
+            block.flip();
+            sink.write(block);
+            written += length;
+            firstFrame = endFrame;
+            progress.accept(written);
+        }
+    }
+
+    public int getBlockFrames() {
+        return blockFrames;
+    }
+
+    // Blocks streamed so far, over every stream() call
+    public long getBlocks() {
+        return blocks;
+    }
+
+    // Longest time spent marking one block
+    public long getMaxMarkNanos() {
+        return maxMarkNanos;
+    }
+
+    public double getMeanMarkNanos() {
+        return blocks == 0 ? 0 : (double) totalMarkNanos / blocks;
+    }
+
+    private static void fill(ReadableByteChannel in, ByteBuffer block, int length) throws IOException {
+        block.clear().limit(length);
+        while (block.hasRemaining()) {
+            if (in.read(block) < 0) {
+                throw new IOException("Audio data ended " + block.remaining() + " bytes early");
+            }
+        }
+    }
+}
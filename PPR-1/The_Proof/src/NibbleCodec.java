@@ -0,0 +1,250 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+// Packs an 8-bit character into the 4 least significant bits of the samples of
+// one frame: the high nibble into even channels (0, 2, ...), the low nibble into
+// odd ones (1, 3, ...), so every channel of a multichannel file carries a copy.
+// Reading takes channels 0 and 1; a mono frame only carries the high nibble, and
+// the low one reads back as 0.
+//
+// A codec is bound to one little-endian buffer over the data chunk, interleaved
+// by channel, and works in place in the file's own sample format:
+//   8-bit unsigned, 16/24/32-bit signed PCM - the low 4 of the valid bits (a
+//     WAVE_FORMAT_EXTENSIBLE 20-in-24 sample keeps its nibble in bits 4-7)
+//   32/64-bit IEEE float - the 4 lowest mantissa bits
+// 16-bit PCM goes through a ShortBuffer view; the rest read and write the one
+// or two bytes holding the nibble. Nothing is allocated per sample.
+//
+// overlay() lays a small writable copy of the first frames over a read-only
+// mapping of the whole chunk, so a watermark can be embedded without copying
+// the recording.
+public abstract class NibbleCodec {
+
+    public static final int NIBBLE_MASK = 0x0F;
+
+    protected final int channels;
+    protected final int bytesPerSample;
+    protected final int blockAlign;
+    protected final int limit;
+
+    private NibbleCodec(int channels, int bytesPerSample, int limit) {
+        this.channels = channels;
+        this.bytesPerSample = bytesPerSample;
+        this.blockAlign = channels * bytesPerSample;
+        this.limit = limit;
+    }
+
+    // Codec for data in the given format; throws IllegalArgumentException for formats it cannot mark
+    public static NibbleCodec of(ByteBuffer data, int channels, int formatTag, int bitsPerSample,
+                                 int validBitsPerSample) {
+        if (channels <= 0) {
+            throw new IllegalArgumentException("Invalid channel count: " + channels);
+        }
+        if (data.order() != ByteOrder.LITTLE_ENDIAN) {
+            throw new IllegalArgumentException("WAV sample data must be little-endian");
+        }
+
+        if (formatTag == WavFile.WAVE_FORMAT_IEEE_FLOAT) {
+            if (bitsPerSample != 32 && bitsPerSample != 64) {
+                throw new IllegalArgumentException("Unsupported float sample size: " + bitsPerSample + " bits");
+            }
+            return new ByteLaneCodec(data, channels, bitsPerSample / 8, 0);
+        }
+
+        if (formatTag != WavFile.WAVE_FORMAT_PCM) {
+            throw new IllegalArgumentException(String.format("Unsupported sample format 0x%04X", formatTag));
+        }
+        if (bitsPerSample != 8 && bitsPerSample != 16 && bitsPerSample != 24 && bitsPerSample != 32) {
+            throw new IllegalArgumentException("Unsupported PCM sample size: " + bitsPerSample + " bits");
+        }
+        if (validBitsPerSample < 8 || validBitsPerSample > bitsPerSample) {
+            throw new IllegalArgumentException("Unsupported PCM valid bits: " + validBitsPerSample + " of "
+                    + bitsPerSample);
+        }
+
+        // Valid bits are left-aligned in the container, so the unused padding sits below them
+        int nibbleBit = bitsPerSample - validBitsPerSample;
+        if (bitsPerSample == 16 && nibbleBit == 0) {
+            return new Pcm16Codec(data, channels);
+        }
+        return new ByteLaneCodec(data, channels, bitsPerSample / 8, nibbleBit);
+    }
+
+    public static NibbleCodec of(ByteBuffer data, WavFile wav) {
+        return of(data, wav.getChannels(), wav.getFormatTag(), wav.getBitsPerSample(), wav.getValidBitsPerSample());
+    }
+
+    // Frames held by patch are read from and written to patch, the rest go to data. Both codecs
+    // must share the sample format, and patch must start at the same frame as data.
+    public static NibbleCodec overlay(NibbleCodec patch, NibbleCodec data) {
+        if (patch.getClass() != data.getClass() || patch.channels != data.channels
+                || patch.bytesPerSample != data.bytesPerSample) {
+            throw new IllegalArgumentException("Patch and data have different sample formats");
+        }
+        return new OverlayCodec(patch, data);
+    }
+
+    // Write value into the given frame
+    public final void encode(int frame, int value) {
+        int first = frame * channels;
+        for (int channel = 0; channel < channels && hasSample(first + channel); channel++) {
+            putNibble(first + channel, (channel & 1) == 0 ? value >>> 4 : value);
+        }
+    }
+
+    // Read back the character stored in the given frame
+    public final int decode(int frame) {
+        int first = frame * channels;
+        int value = getNibble(first) << 4;
+        if (channels > 1 && hasSample(first + 1)) {
+            value |= getNibble(first + 1);
+        }
+        return value;
+    }
+
+    // True when the frame's first sample lies inside the buffer
+    public final boolean hasFrame(int frame) {
+        return hasSample((long) frame * channels);
+    }
+
+    // Byte offset of the frame in the data chunk
+    public final int byteOffset(int frame) {
+        return frame * blockAlign;
+    }
+
+    public final int getChannels() {
+        return channels;
+    }
+
+    // Frames wholly inside the buffer
+    public final int getFrames() {
+        return limit / blockAlign;
+    }
+
+    // Frames whose first sample lies inside the buffer: hasFrame(f) holds exactly for f below this
+    public final int getAddressableFrames() {
+        return (limit / bytesPerSample + channels - 1) / channels;
+    }
+
+    // The first channel's sample in the frame as raw container bits (sign-extended for PCM wider
+    // than 8 bits, the low 32 bits for float64); for traces
+    public abstract int rawSample(int frame);
+
+    protected abstract int getNibble(int sample);
+
+    protected abstract void putNibble(int sample, int nibble);
+
+    private boolean hasSample(long sample) {
+        return (sample + 1) * bytesPerSample <= limit;
+    }
+
+    // 16-bit PCM through one ShortBuffer view
+    private static final class Pcm16Codec extends NibbleCodec {
+        private final ShortBuffer samples;
+
+        Pcm16Codec(ByteBuffer data, int channels) {
+            super(channels, Short.BYTES, data.limit());
+            this.samples = data.duplicate().order(ByteOrder.LITTLE_ENDIAN).rewind().asShortBuffer();
+        }
+
+        @Override
+        public int rawSample(int frame) {
+            return samples.get(frame * channels);
+        }
+
+        @Override
+        protected int getNibble(int sample) {
+            return samples.get(sample) & NIBBLE_MASK;
+        }
+
+        @Override
+        protected void putNibble(int sample, int nibble) {
+            samples.put(sample, (short) ((samples.get(sample) & ~NIBBLE_MASK) | (nibble & NIBBLE_MASK)));
+        }
+    }
+
+    // Any other layout: the nibble sits at nibbleBit of the little-endian sample, so only the
+    // byte holding it (and the next one, when it straddles a byte boundary) is touched
+    private static final class ByteLaneCodec extends NibbleCodec {
+        private final ByteBuffer data;
+        private final int byteInSample;
+        private final int shift;
+        private final boolean straddles;
+
+        ByteLaneCodec(ByteBuffer data, int channels, int bytesPerSample, int nibbleBit) {
+            super(channels, bytesPerSample, data.limit());
+            this.data = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            this.byteInSample = nibbleBit / 8;
+            this.shift = nibbleBit % 8;
+            this.straddles = shift > 4;
+        }
+
+        @Override
+        public int rawSample(int frame) {
+            int offset = frame * blockAlign;
+            int bytes = Math.min(bytesPerSample, Integer.BYTES);
+            int value = 0;
+            for (int i = 0; i < bytes; i++) {
+                value |= (data.get(offset + i) & 0xFF) << (8 * i);
+            }
+            // Sign-extend 24-bit PCM
+            int unused = 32 - 8 * bytes;
+            return bytesPerSample > 1 && unused > 0 ? value << unused >> unused : value;
+        }
+
+        @Override
+        protected int getNibble(int sample) {
+            int p = sample * bytesPerSample + byteInSample;
+            int bits = data.get(p) & 0xFF;
+            if (straddles) {
+                bits |= (data.get(p + 1) & 0xFF) << 8;
+            }
+            return bits >>> shift & NIBBLE_MASK;
+        }
+
+        @Override
+        protected void putNibble(int sample, int nibble) {
+            int p = sample * bytesPerSample + byteInSample;
+            int mask = NIBBLE_MASK << shift;
+            int bits = (nibble & NIBBLE_MASK) << shift;
+            data.put(p, (byte) ((data.get(p) & ~mask) | bits));
+            if (straddles) {
+                data.put(p + 1, (byte) ((data.get(p + 1) & ~(mask >>> 8)) | bits >>> 8));
+            }
+        }
+    }
+
+    // A patch over the first frames of data; see overlay()
+    private static final class OverlayCodec extends NibbleCodec {
+        private final NibbleCodec patch;
+        private final NibbleCodec data;
+        private final int patchSamples;
+
+        OverlayCodec(NibbleCodec patch, NibbleCodec data) {
+            super(data.channels, data.bytesPerSample, data.limit);
+            this.patch = patch;
+            this.data = data;
+            this.patchSamples = patch.limit / patch.bytesPerSample;
+        }
+
+        @Override
+        public int rawSample(int frame) {
+            return frame * channels < patchSamples ? patch.rawSample(frame) : data.rawSample(frame);
+        }
+
+        @Override
+        protected int getNibble(int sample) {
+            return sample < patchSamples ? patch.getNibble(sample) : data.getNibble(sample);
+        }
+
+        @Override
+        protected void putNibble(int sample, int nibble) {
+            if (sample < patchSamples) {
+                patch.putNibble(sample, nibble);
+            } else {
+                data.putNibble(sample, nibble);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+// Keeps the most recent trace events in fixed-size int arrays, overwriting the
+// oldest once full, so a GUI can show the tail of a long run without holding a
+// String per pixel. Nothing is allocated per event.
+public final class RingBufferTraceSink implements TraceSink {
+
+    private final int capacity;
+    private final int[] kind;
+    private final int[] index;
+    private final int[] position;
+    private final int[] location;
+    private final int[] value;
+    private final int[] before;
+    private final int[] after;
+
+    // Total events received; the slot for the next one is count % capacity
+    private long count;
+
+    public RingBufferTraceSink(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.kind = new int[capacity];
+        this.index = new int[capacity];
+        this.position = new int[capacity];
+        this.location = new int[capacity];
+        this.value = new int[capacity];
+        this.before = new int[capacity];
+        this.after = new int[capacity];
+    }
+
+    @Override
+    public synchronized void event(int kind, int index, int position, int location, int value, int before,
+                                   int after) {
+        int slot = (int) (count % capacity);
+        this.kind[slot] = kind;
+        this.index[slot] = index;
+        this.position[slot] = position;
+        this.location[slot] = location;
+        this.value[slot] = value;
+        this.before[slot] = before;
+        this.after[slot] = after;
+        count++;
+    }
+
+    // Replay the retained events, oldest first
+    public synchronized void forEach(TraceSink target) {
+        int retained = size();
+        long first = count - retained;
+        for (long i = first; i < count; i++) {
+            int slot = (int) (i % capacity);
+            target.event(kind[slot], index[slot], position[slot], location[slot], value[slot], before[slot],
+                    after[slot]);
+        }
+    }
+
+    public synchronized int size() {
+        return (int) Math.min(count, capacity);
+    }
+
+    // Events overwritten before they could be read
+    public synchronized long dropped() {
+        return count - size();
+    }
+
+    public synchronized void clear() {
+        count = 0;
+    }
+}
@@ -0,0 +1,121 @@
+import java.nio.ByteBuffer;
+
+// Converts the samples of a WAV data chunk to and from doubles in [-1, 1), for the
+// engines that reshape the signal itself instead of flipping LSBs:
+//   8-bit unsigned, 16/24/32-bit signed PCM - scaled by the container's full range;
+//     written back rounded to the valid bits (a 20-in-24 sample keeps its padding 0)
+//   32/64-bit IEEE float - as is
+// Reads and writes are absolute, on little-endian buffers.
+public final class SampleFormat {
+
+    private static final int PCM8 = 0;
+    private static final int PCM16 = 1;
+    private static final int PCM24 = 2;
+    private static final int PCM32 = 3;
+    private static final int FLOAT32 = 4;
+    private static final int FLOAT64 = 5;
+
+    private final int layout;
+    private final int channels;
+    private final int bytesPerSample;
+    private final int padding;
+    private final double fullScale;
+    private final long minValue;
+    private final long maxValue;
+
+    private SampleFormat(int layout, int channels, int bitsPerSample, int validBitsPerSample) {
+        this.layout = layout;
+        this.channels = channels;
+        this.bytesPerSample = bitsPerSample / 8;
+        this.padding = bitsPerSample - validBitsPerSample;
+        this.fullScale = Math.scalb(1.0, bitsPerSample - 1);
+        this.minValue = -(1L << (validBitsPerSample - 1));
+        this.maxValue = (1L << (validBitsPerSample - 1)) - 1;
+    }
+
+    // Throws IllegalArgumentException for formats it cannot convert
+    public static SampleFormat of(int channels, int formatTag, int bitsPerSample, int validBitsPerSample) {
+        if (channels <= 0) {
+            throw new IllegalArgumentException("Invalid channel count: " + channels);
+        }
+
+        if (formatTag == WavFile.WAVE_FORMAT_IEEE_FLOAT) {
+            return switch (bitsPerSample) {
+                case 32 -> new SampleFormat(FLOAT32, channels, 32, 32);
+                case 64 -> new SampleFormat(FLOAT64, channels, 64, 64);
+                default -> throw new IllegalArgumentException("Unsupported float sample size: "
+                        + bitsPerSample + " bits");
+            };
+        }
+
+        if (formatTag != WavFile.WAVE_FORMAT_PCM) {
+            throw new IllegalArgumentException(String.format("Unsupported sample format 0x%04X", formatTag));
+        }
+        if (validBitsPerSample < 8 || validBitsPerSample > bitsPerSample) {
+            throw new IllegalArgumentException("Unsupported PCM valid bits: " + validBitsPerSample + " of "
+                    + bitsPerSample);
+        }
+        int layout = switch (bitsPerSample) {
+            case 8 -> PCM8;
+            case 16 -> PCM16;
+            case 24 -> PCM24;
+            case 32 -> PCM32;
+            default -> throw new IllegalArgumentException("Unsupported PCM sample size: " + bitsPerSample + " bits");
+        };
+        return new SampleFormat(layout, channels, bitsPerSample, validBitsPerSample);
+    }
+
+    public static SampleFormat of(WavFile wav) {
+        return of(wav.getChannels(), wav.getFormatTag(), wav.getBitsPerSample(), wav.getValidBitsPerSample());
+    }
+
+    public double read(ByteBuffer data, int offset) {
+        return switch (layout) {
+            case PCM8 -> ((data.get(offset) & 0xFF) - 128) / fullScale;
+            case PCM16 -> data.getShort(offset) / fullScale;
+            case PCM24 -> ((data.get(offset) & 0xFF) | (data.get(offset + 1) & 0xFF) << 8
+                    | data.get(offset + 2) << 16) / fullScale;
+            case PCM32 -> data.getInt(offset) / fullScale;
+            case FLOAT32 -> data.getFloat(offset);
+            default -> data.getDouble(offset);
+        };
+    }
+
+    // PCM values outside [-1, 1) are clipped
+    public void write(ByteBuffer data, int offset, double value) {
+        if (layout == FLOAT32) {
+            data.putFloat(offset, (float) value);
+            return;
+        }
+        if (layout == FLOAT64) {
+            data.putDouble(offset, value);
+            return;
+        }
+
+        long quantized = Math.round(Math.scalb(value * fullScale, -padding));
+        int sample = (int) (Math.max(minValue, Math.min(maxValue, quantized)) << padding);
+        switch (layout) {
+            case PCM8 -> data.put(offset, (byte) (sample + 128));
+            case PCM16 -> data.putShort(offset, (short) sample);
+            case PCM24 -> {
+                data.put(offset, (byte) sample);
+                data.put(offset + 1, (byte) (sample >> 8));
+                data.put(offset + 2, (byte) (sample >> 16));
+            }
+            default -> data.putInt(offset, sample);
+        }
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getBytesPerSample() {
+        return bytesPerSample;
+    }
+
+    // Bytes per frame (one sample for every channel)
+    public int getBlockAlign() {
+        return channels * bytesPerSample;
+    }
+}
@@ -0,0 +1,603 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.LongConsumer;
+
+// A spread-spectrum audio watermark that survives gain changes, lossy
+// re-encoding and resampling round trips, where the LSB scheme of
+// AudioWatermarkEngine does not survive any of them.
+//
+// The signal is cut into FRAME_SIZE-sample frames at 50% overlap (sqrt-Hann
+// analysis and synthesis windows, so untouched frames add back to the input).
+// Between BAND_LOW_HZ and BAND_HIGH_HZ the spectrum is split into BANDS bands,
+// and every band of every frame is scaled by e^(+-STRENGTH): the sign is a
+// keyed pseudo-random chip times the payload bit the frame carries. Each bit
+// lasts FRAMES_PER_BIT frames, a period is a SYNC_BITS sync word plus
+// PAYLOAD_CHARS characters, and periods repeat to the end of the recording.
+// Every channel gets the same gains.
+//
+// Detection never needs the original. It correlates the band log-energies of
+// the mono mix with the chips, summed over every period heard, and searches
+// all frame alignments and PHASES sub-hop offsets for the sync word, so codec
+// delay or trimmed leading silence do not matter. Log-energies make the
+// correlation blind to overall gain, and each frame's chips are balanced so a
+// fixed spectral tilt cancels out.
+//
+// Both directions stream: a few hops of samples are held at a time, whatever
+// the length of the file. Frames are sized in samples, so a file has to be
+// detected at the rate it was marked at (resample back before detecting).
+// An engine only holds read-only tables once built, so one instance can embed
+// or detect on several threads at once.
+public final class SpreadSpectrumEngine {
+
+    public static final int FRAME_SIZE = 2048;
+    public static final int HOP_SIZE = FRAME_SIZE / 2;
+
+    public static final int PAYLOAD_CHARS = 8;
+    public static final int SYNC_BITS = 24;
+    public static final int BITS = SYNC_BITS + PAYLOAD_CHARS * 8;
+    public static final int FRAMES_PER_BIT = 8;
+    public static final int PERIOD_FRAMES = BITS * FRAMES_PER_BIT;
+
+    public static final int BANDS = 64;
+    public static final double BAND_LOW_HZ = 1000;
+    public static final double BAND_HIGH_HZ = 8000;
+
+    // Natural-log gain of a band; e^0.08 is about 0.7 dB
+    public static final double STRENGTH = 0.08;
+
+    // How far the best sync score must stand out from all the alignments tried, in standard deviations
+    public static final double DETECTION_THRESHOLD = 5.0;
+
+    // Sync word bits that may come out wrong at the best alignment of a detected mark
+    public static final int MAX_SYNC_ERRORS = 2;
+
+    // detect() channel that listens to the mono mix
+    public static final int ALL_CHANNELS = -1;
+
+    private static final int SYNC_WORD = 0xB59CE3;
+
+    // Detector frames start every HOP_SIZE / PHASES samples
+    private static final int PHASES = 4;
+    private static final int QUARTER = HOP_SIZE / PHASES;
+
+    // Hops read or written per channel call
+    private static final int BLOCK_HOPS = 16;
+
+    // Keeps log() finite on digital silence
+    private static final double ENERGY_FLOOR = 1e-20;
+
+    private final TraceSink trace;
+    private final boolean tracing;
+    private final byte[][] chips;
+    private final double[] window;
+    private final Fft fft = new Fft(FRAME_SIZE);
+
+    public SpreadSpectrumEngine(long key) {
+        this(key, TraceSink.NONE);
+    }
+
+    public SpreadSpectrumEngine(long key, TraceSink trace) {
+        this.trace = trace;
+        this.tracing = trace.isEnabled();
+
+        // Each frame of a period gets its own shuffle of BANDS / 2 plus and BANDS / 2 minus chips
+        SplittableRandom random = new SplittableRandom(key);
+        chips = new byte[PERIOD_FRAMES][BANDS];
+        for (byte[] frame : chips) {
+            for (int b = 0; b < BANDS; b++) {
+                frame[b] = (byte) (b < BANDS / 2 ? 1 : -1);
+            }
+            for (int b = BANDS - 1; b > 0; b--) {
+                int other = random.nextInt(b + 1);
+                byte t = frame[b];
+                frame[b] = frame[other];
+                frame[other] = t;
+            }
+        }
+
+        window = new double[FRAME_SIZE];
+        for (int n = 0; n < FRAME_SIZE; n++) {
+            window[n] = Math.sin(Math.PI * n / FRAME_SIZE);
+        }
+    }
+
+    // Chip seed for a password: the first 8 bytes of its SHA-256
+    public static long key(String password) {
+        return ByteBuffer.wrap(HashUtils.getSHA256Hash(password)).getLong();
+    }
+
+    // Reads dataSize bytes of samples from in and writes as many, marked, to out. progress
+    // gets the number of bytes read so far after every block; an exception it throws stops the embed.
+    public void embed(ReadableByteChannel in, WritableByteChannel out, long dataSize, SampleFormat format,
+                      int sampleRate, String payload, LongConsumer progress) throws IOException {
+        int[] bits = payloadBits(payload);
+        int[] edges = bandEdges(sampleRate);
+        int channels = format.getChannels();
+        int blockAlign = format.getBlockAlign();
+        int bytesPerSample = format.getBytesPerSample();
+        double up = Math.exp(STRENGTH);
+        double down = Math.exp(-STRENGTH);
+
+        ByteBuffer inBlock = ByteBuffer.allocateDirect(BLOCK_HOPS * HOP_SIZE * blockAlign)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer outBlock = ByteBuffer.allocateDirect(inBlock.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+
+        // Per channel: the frame being analysed (previous hop, then the new one), the second
+        // half of the last frame's output still to be added, and the finished hop
+        double[][] frame = new double[channels][FRAME_SIZE];
+        double[][] overlap = new double[channels][HOP_SIZE];
+        double[][] finished = new double[channels][HOP_SIZE];
+        double[] re = new double[FRAME_SIZE];
+        double[] im = new double[FRAME_SIZE];
+        double[] gains = new double[BANDS];
+
+        long wholeFrames = dataSize / blockAlign;
+        long framesRead = 0;
+        long hop = 0;
+        int previousHopFrames = 0;
+
+        while (true) {
+            int blockFrames = (int) Math.min(BLOCK_HOPS * HOP_SIZE, wholeFrames - framesRead);
+            fill(in, inBlock, blockFrames * blockAlign);
+            framesRead += blockFrames;
+
+            // A last frame of zeros flushes the final hop out of the overlap
+            int hopsInBlock = blockFrames == 0 ? 1 : (blockFrames + HOP_SIZE - 1) / HOP_SIZE;
+            for (int h = 0; h < hopsInBlock; h++) {
+                int hopFrames = Math.min(HOP_SIZE, blockFrames - h * HOP_SIZE);
+                for (int c = 0; c < channels; c++) {
+                    double[] samples = frame[c];
+                    for (int n = 0; n < hopFrames; n++) {
+                        samples[HOP_SIZE + n] = format.read(inBlock, (h * HOP_SIZE + n) * blockAlign
+                                + c * bytesPerSample);
+                    }
+                    Arrays.fill(samples, HOP_SIZE + hopFrames, FRAME_SIZE, 0);
+                }
+
+                int k = (int) (hop % PERIOD_FRAMES);
+                int bit = bits[k / FRAMES_PER_BIT];
+                for (int b = 0; b < BANDS; b++) {
+                    gains[b] = bit * chips[k][b] > 0 ? up : down;
+                }
+                shapeFrame(frame, overlap, finished, re, im, gains, edges);
+
+                if (hop > 0) {
+                    write(out, outBlock, finished, previousHopFrames, format);
+                }
+                if (tracing) {
+                    trace.event(TraceSink.EMBED, (int) hop, k, (int) Math.min(Integer.MAX_VALUE,
+                            hop * HOP_SIZE * blockAlign), bit > 0 ? 1 : 0, 0, 0);
+                }
+
+                for (double[] samples : frame) {
+                    System.arraycopy(samples, HOP_SIZE, samples, 0, HOP_SIZE);
+                }
+                previousHopFrames = hopFrames;
+                hop++;
+            }
+
+            progress.accept(framesRead * blockAlign);
+            if (blockFrames == 0) {
+                break;
+            }
+        }
+        flush(out, outBlock);
+
+        // A trailing partial frame is copied as is
+        int tail = (int) (dataSize - wholeFrames * blockAlign);
+        if (tail > 0) {
+            ByteBuffer rest = ByteBuffer.allocate(tail);
+            fill(in, rest, tail);
+            rest.flip();
+            while (rest.hasRemaining()) {
+                out.write(rest);
+            }
+        }
+    }
+
+    // Reads dataSize bytes of samples from in and looks for a watermark made with this key
+    public Detection detect(ReadableByteChannel in, long dataSize, SampleFormat format, int sampleRate,
+                            LongConsumer progress) throws IOException {
+        return detect(in, dataSize, format, sampleRate, ALL_CHANNELS, progress);
+    }
+
+    // As above, listening to one channel only, or to the mono mix for ALL_CHANNELS
+    public Detection detect(ReadableByteChannel in, long dataSize, SampleFormat format, int sampleRate,
+                            int channel, LongConsumer progress) throws IOException {
+        int[] edges = bandEdges(sampleRate);
+        int channels = format.getChannels();
+        if (channel != ALL_CHANNELS && (channel < 0 || channel >= channels)) {
+            throw new IllegalArgumentException("No channel " + channel + " in " + channels + "-channel audio");
+        }
+        int blockAlign = format.getBlockAlign();
+        int bytesPerSample = format.getBytesPerSample();
+
+        ByteBuffer inBlock = ByteBuffer.allocateDirect(BLOCK_HOPS * HOP_SIZE * blockAlign)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        // Band log-energies summed per phase and position in the period
+        double[][][] sums = new double[PHASES][PERIOD_FRAMES][BANDS];
+        int[][] counts = new int[PHASES][PERIOD_FRAMES];
+
+        double[] history = new double[FRAME_SIZE];
+        double[] re = new double[FRAME_SIZE];
+        double[] im = new double[FRAME_SIZE];
+        double[] energies = new double[2 * BANDS];
+        int first = channel == ALL_CHANNELS ? 0 : channel;
+        int last = channel == ALL_CHANNELS ? channels - 1 : channel;
+        double scale = 1.0 / (last - first + 1);
+
+        // Frames are transformed two at a time; the first waits in re[] for its partner
+        int pendingPhase = -1;
+        long pendingFrame = 0;
+
+        long wholeFrames = dataSize / blockAlign;
+        long framesRead = 0;
+        long quarters = 0;
+        int filled = 0;
+
+        while (framesRead < wholeFrames) {
+            int blockFrames = (int) Math.min(BLOCK_HOPS * HOP_SIZE, wholeFrames - framesRead);
+            fill(in, inBlock, blockFrames * blockAlign);
+            framesRead += blockFrames;
+
+            for (int n = 0; n < blockFrames; n++) {
+                if (filled == 0) {
+                    System.arraycopy(history, QUARTER, history, 0, FRAME_SIZE - QUARTER);
+                }
+                double mono = 0;
+                for (int c = first; c <= last; c++) {
+                    mono += format.read(inBlock, n * blockAlign + c * bytesPerSample);
+                }
+                history[FRAME_SIZE - QUARTER + filled] = mono * scale;
+                if (++filled < QUARTER) {
+                    continue;
+                }
+                filled = 0;
+                quarters++;
+
+                // A frame ending at quarter m has phase m % PHASES; phase 0 frames line up with the embedder's
+                int phase = (int) (quarters % PHASES);
+                long frameIndex = quarters / PHASES - 1;
+                if (frameIndex < 0) {
+                    continue;
+                }
+                if (pendingPhase < 0) {
+                    for (int i = 0; i < FRAME_SIZE; i++) {
+                        re[i] = history[i] * window[i];
+                    }
+                    pendingPhase = phase;
+                    pendingFrame = frameIndex;
+                } else {
+                    for (int i = 0; i < FRAME_SIZE; i++) {
+                        im[i] = history[i] * window[i];
+                    }
+                    pairEnergies(re, im, edges, energies);
+                    accumulate(sums, counts, pendingPhase, pendingFrame, energies, 0);
+                    accumulate(sums, counts, phase, frameIndex, energies, BANDS);
+                    pendingPhase = -1;
+                }
+            }
+            progress.accept(framesRead * blockAlign);
+        }
+        if (pendingPhase >= 0) {
+            Arrays.fill(im, 0);
+            pairEnergies(re, im, edges, energies);
+            accumulate(sums, counts, pendingPhase, pendingFrame, energies, 0);
+        }
+
+        return decide(sums, counts, quarters / PHASES);
+    }
+
+    // One hop of overlap-add for every channel, two channels per complex FFT: scale the bands
+    // of the windowed frame by gains and add the windowed result to what the last frame left
+    private void shapeFrame(double[][] frame, double[][] overlap, double[][] finished, double[] re, double[] im,
+                            double[] gains, int[] edges) {
+        int channels = frame.length;
+        for (int c = 0; c < channels; c += 2) {
+            boolean pair = c + 1 < channels;
+            for (int n = 0; n < FRAME_SIZE; n++) {
+                re[n] = frame[c][n] * window[n];
+                im[n] = pair ? frame[c + 1][n] * window[n] : 0;
+            }
+
+            fft.forward(re, im);
+            // Both signals are real, so a real gain on bin k and its mirror keeps them apart
+            for (int b = 0; b < BANDS; b++) {
+                double g = gains[b];
+                for (int k = edges[b]; k < edges[b + 1]; k++) {
+                    re[k] *= g;
+                    im[k] *= g;
+                    re[FRAME_SIZE - k] *= g;
+                    im[FRAME_SIZE - k] *= g;
+                }
+            }
+            fft.inverse(re, im);
+
+            overlapAdd(re, overlap[c], finished[c]);
+            if (pair) {
+                overlapAdd(im, overlap[c + 1], finished[c + 1]);
+            }
+        }
+    }
+
+    private void overlapAdd(double[] shaped, double[] overlap, double[] finished) {
+        for (int n = 0; n < HOP_SIZE; n++) {
+            finished[n] = overlap[n] + shaped[n] * window[n];
+            overlap[n] = shaped[HOP_SIZE + n] * window[HOP_SIZE + n];
+        }
+    }
+
+    // Band energies of two real frames transformed together as re + i * im: the first frame's
+    // go to energies[0, BANDS), the second's to energies[BANDS, 2 * BANDS)
+    private void pairEnergies(double[] re, double[] im, int[] edges, double[] energies) {
+        fft.forward(re, im);
+        for (int b = 0; b < BANDS; b++) {
+            double first = 0;
+            double second = 0;
+            for (int k = edges[b]; k < edges[b + 1]; k++) {
+                int m = FRAME_SIZE - k;
+                double xr = re[k] + re[m];
+                double xi = im[k] - im[m];
+                double yr = im[k] + im[m];
+                double yi = re[k] - re[m];
+                first += xr * xr + xi * xi;
+                second += yr * yr + yi * yi;
+            }
+            energies[b] = first / 4;
+            energies[BANDS + b] = second / 4;
+        }
+    }
+
+    private static void accumulate(double[][][] sums, int[][] counts, int phase, long frameIndex,
+                                   double[] energies, int from) {
+        int position = (int) (frameIndex % PERIOD_FRAMES);
+        double[] sum = sums[phase][position];
+        for (int b = 0; b < BANDS; b++) {
+            sum[b] += 0.5 * Math.log(energies[from + b] + ENERGY_FLOOR);
+        }
+        counts[phase][position]++;
+    }
+
+    // Find the phase and frame alignment whose bits best match the sync word, then read the payload there
+    private Detection decide(double[][][] sums, int[][] counts, long framesHeard) {
+        double periods = (double) framesHeard / PERIOD_FRAMES;
+        if (framesHeard < PERIOD_FRAMES) {
+            return new Detection(false, "", 0, 0, 0, periods);
+        }
+
+        double[][][] means = new double[PHASES][][];
+        for (int s = 0; s < PHASES; s++) {
+            means[s] = centered(sums[s], counts[s]);
+        }
+
+        double[] bitSums = new double[BITS];
+        double best = Double.NEGATIVE_INFINITY;
+        int bestPhase = 0;
+        int bestShift = 0;
+        double total = 0;
+        double totalSquares = 0;
+        int tried = 0;
+
+        for (int s = 0; s < PHASES; s++) {
+            for (int shift = 0; shift < PERIOD_FRAMES; shift++) {
+                correlate(means[s], shift, SYNC_BITS, bitSums);
+                double score = 0;
+                for (int j = 0; j < SYNC_BITS; j++) {
+                    score += syncBit(j) * bitSums[j];
+                }
+                total += score;
+                totalSquares += score * score;
+                tried++;
+                if (score > best) {
+                    best = score;
+                    bestPhase = s;
+                    bestShift = shift;
+                }
+            }
+        }
+
+        double mean = total / tried;
+        double deviation = Math.sqrt(Math.max(totalSquares / tried - mean * mean, 0));
+        double z = deviation > 0 ? (best - mean) / deviation : 0;
+
+        correlate(means[bestPhase], bestShift, BITS, bitSums);
+        int matched = 0;
+        for (int j = 0; j < SYNC_BITS; j++) {
+            if (syncBit(j) * bitSums[j] > 0) {
+                matched++;
+            }
+        }
+        byte[] text = new byte[PAYLOAD_CHARS];
+        int length = 0;
+        for (int i = 0; i < PAYLOAD_CHARS; i++) {
+            int value = 0;
+            for (int j = 0; j < 8; j++) {
+                value = value << 1 | (bitSums[SYNC_BITS + i * 8 + j] > 0 ? 1 : 0);
+            }
+            text[i] = (byte) value;
+        }
+        while (length < PAYLOAD_CHARS && text[length] != 0) {
+            length++;
+        }
+
+        // Detector frame j of phase s covers the embedder's frame j + shift
+        long delay = Math.floorMod((long) bestPhase * QUARTER - (long) bestShift * HOP_SIZE,
+                (long) PERIOD_FRAMES * HOP_SIZE);
+        boolean detected = matched >= SYNC_BITS - MAX_SYNC_ERRORS && z >= DETECTION_THRESHOLD;
+        return new Detection(detected, new String(text, 0, length, StandardCharsets.ISO_8859_1), matched, z,
+                delay, periods);
+    }
+
+    // Mean log-energy per position, with each band's average over the period taken off
+    private static double[][] centered(double[][] sums, int[] counts) {
+        double[][] means = new double[PERIOD_FRAMES][BANDS];
+        double[] bandMean = new double[BANDS];
+        int filled = 0;
+        for (int g = 0; g < PERIOD_FRAMES; g++) {
+            if (counts[g] == 0) {
+                continue;
+            }
+            filled++;
+            for (int b = 0; b < BANDS; b++) {
+                means[g][b] = sums[g][b] / counts[g];
+                bandMean[b] += means[g][b];
+            }
+        }
+        for (int g = 0; g < PERIOD_FRAMES; g++) {
+            if (counts[g] == 0) {
+                continue;
+            }
+            for (int b = 0; b < BANDS; b++) {
+                means[g][b] -= bandMean[b] / filled;
+            }
+        }
+        return means;
+    }
+
+    // Correlation of the first bitCount bits with the chips, assuming detector frame g is the embedder's g + shift
+    private void correlate(double[][] means, int shift, int bitCount, double[] bitSums) {
+        for (int j = 0; j < bitCount; j++) {
+            double sum = 0;
+            for (int r = 0; r < FRAMES_PER_BIT; r++) {
+                int k = j * FRAMES_PER_BIT + r;
+                double[] heard = means[Math.floorMod(k - shift, PERIOD_FRAMES)];
+                byte[] chip = chips[k];
+                for (int b = 0; b < BANDS; b++) {
+                    sum += chip[b] * heard[b];
+                }
+            }
+            bitSums[j] = sum;
+        }
+    }
+
+    private static int syncBit(int j) {
+        return (SYNC_WORD >>> (SYNC_BITS - 1 - j) & 1) == 1 ? 1 : -1;
+    }
+
+    // +1 / -1 per bit of a period: the sync word, then the payload bytes, zero-padded, MSB first
+    private static int[] payloadBits(String payload) {
+        if (payload.length() > PAYLOAD_CHARS) {
+            throw new IllegalArgumentException("Spread-spectrum payload is limited to " + PAYLOAD_CHARS
+                    + " characters");
+        }
+        int[] bits = new int[BITS];
+        for (int j = 0; j < SYNC_BITS; j++) {
+            bits[j] = syncBit(j);
+        }
+        for (int i = 0; i < PAYLOAD_CHARS; i++) {
+            int value = i < payload.length() ? payload.charAt(i) & 0xFF : 0;
+            for (int j = 0; j < 8; j++) {
+                bits[SYNC_BITS + i * 8 + j] = (value >>> (7 - j) & 1) == 1 ? 1 : -1;
+            }
+        }
+        return bits;
+    }
+
+    // First FFT bin of each band, plus the end of the last one
+    private static int[] bandEdges(int sampleRate) {
+        if (sampleRate < 2 * BAND_HIGH_HZ) {
+            throw new IllegalArgumentException("Sample rate " + sampleRate + " Hz is too low for the "
+                    + (int) BAND_HIGH_HZ + " Hz watermark band");
+        }
+        int[] edges = new int[BANDS + 1];
+        for (int b = 0; b <= BANDS; b++) {
+            double hz = BAND_LOW_HZ + (BAND_HIGH_HZ - BAND_LOW_HZ) * b / BANDS;
+            edges[b] = (int) Math.round(hz * FRAME_SIZE / sampleRate);
+        }
+        return edges;
+    }
+
+    private static void fill(ReadableByteChannel in, ByteBuffer block, int length) throws IOException {
+        block.clear().limit(length);
+        while (block.hasRemaining()) {
+            if (in.read(block) < 0) {
+                throw new IOException("Audio data ended " + block.remaining() + " bytes early");
+            }
+        }
+    }
+
+    private static void write(WritableByteChannel out, ByteBuffer block, double[][] hop, int frames,
+                              SampleFormat format) throws IOException {
+        int blockAlign = format.getBlockAlign();
+        int bytesPerSample = format.getBytesPerSample();
+        for (int n = 0; n < frames; n++) {
+            if (block.remaining() < blockAlign) {
+                flush(out, block);
+            }
+            int offset = block.position();
+            for (int c = 0; c < hop.length; c++) {
+                format.write(block, offset + c * bytesPerSample, hop[c][n]);
+            }
+            block.position(offset + blockAlign);
+        }
+    }
+
+    private static void flush(WritableByteChannel out, ByteBuffer block) throws IOException {
+        block.flip();
+        while (block.hasRemaining()) {
+            out.write(block);
+        }
+        block.clear();
+    }
+
+    // What detect() found. The payload is only meaningful when isDetected().
+    public static final class Detection {
+        private final boolean detected;
+        private final String payload;
+        private final int syncBitsMatched;
+        private final double score;
+        private final long delay;
+        private final double periods;
+
+        Detection(boolean detected, String payload, int syncBitsMatched, double score, long delay, double periods) {
+            this.detected = detected;
+            this.payload = payload;
+            this.syncBitsMatched = syncBitsMatched;
+            this.score = score;
+            this.delay = delay;
+            this.periods = periods;
+        }
+
+        public boolean isDetected() {
+            return detected;
+        }
+
+        public String getPayload() {
+            return payload;
+        }
+
+        // Sync word bits that came out right at the best alignment, out of SYNC_BITS
+        public int getSyncBitsMatched() {
+            return syncBitsMatched;
+        }
+
+        // Standard deviations by which the best alignment beats the others
+        public double getScore() {
+            return score;
+        }
+
+        // Samples by which the audio lags the embedder's period, modulo a period
+        public long getDelay() {
+            return delay;
+        }
+
+        // Watermark periods the recording was long enough to hold
+        public double getPeriods() {
+            return periods;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s \"%s\" (sync %d/%d, score %.1f, delay %d samples, %.1f periods)",
+                    detected ? "detected" : "not detected", payload, syncBitsMatched, SYNC_BITS, score, delay,
+                    periods);
+        }
+    }
+}
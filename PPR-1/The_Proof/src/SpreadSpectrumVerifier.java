@@ -0,0 +1,208 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+// Locates tampered sections of a long spread-spectrum-marked recording. The data
+// chunk is cut into segments of segmentPeriods watermark periods (see
+// segments() for the remainder), and every channel of every segment is detected on its
+// own, so a cut, a splice or a re-recorded channel shows up as the cells whose
+// mark is gone.
+//
+// Cells are checked in parallel on a ForkJoinPool: the cell range is split in
+// half until one cell is left, and each cell streams its own slice of the file
+// through positional reads. One SpreadSpectrumEngine serves every thread.
+//
+// A segment needs at least one whole period (about 15 s at 48 kHz) to be read
+// at all; two give a clear margin over the detection threshold.
+public final class SpreadSpectrumVerifier {
+
+    public static final int DEFAULT_SEGMENT_PERIODS = 2;
+
+    private final SpreadSpectrumEngine engine;
+    private final int segmentPeriods;
+    private final ForkJoinPool pool;
+
+    public SpreadSpectrumVerifier(long key) {
+        this(key, DEFAULT_SEGMENT_PERIODS, ForkJoinPool.commonPool());
+    }
+
+    public SpreadSpectrumVerifier(long key, int segmentPeriods, ForkJoinPool pool) {
+        if (segmentPeriods < 1) {
+            throw new IllegalArgumentException("A segment must span at least one period: " + segmentPeriods);
+        }
+        this.engine = new SpreadSpectrumEngine(key);
+        this.segmentPeriods = segmentPeriods;
+        this.pool = pool;
+    }
+
+    // Frames in one watermark period
+    public static long periodFrames() {
+        return (long) SpreadSpectrumEngine.PERIOD_FRAMES * SpreadSpectrumEngine.HOP_SIZE;
+    }
+
+    // Segments a recording of totalFrames frames is cut into; a remainder of at least one
+    // period is a segment of its own, a shorter one joins the last whole segment
+    public int segments(long totalFrames) {
+        long segmentFrames = segmentPeriods * periodFrames();
+        long whole = totalFrames / segmentFrames;
+        boolean remainder = totalFrames % segmentFrames >= periodFrames();
+        return (int) Math.max(1, whole + (remainder ? 1 : 0));
+    }
+
+    // A cell is intact when its mark is detected and, if expectedPayload is not null, carries it.
+    // progress gets the number of cells done so far, one call per cell, from the pool's threads;
+    // an exception it throws stops the remaining cells and is rethrown here.
+    public Report verify(WavFile wav, String expectedPayload, IntConsumer progress) throws IOException {
+        SampleFormat format = SampleFormat.of(wav);
+        int channels = format.getChannels();
+        int blockAlign = format.getBlockAlign();
+        long totalFrames = wav.getDataSize() / blockAlign;
+
+        long segmentFrames = segmentPeriods * periodFrames();
+        int segments = segments(totalFrames);
+        long[] starts = new long[segments + 1];
+        for (int s = 0; s < segments; s++) {
+            starts[s] = s * segmentFrames;
+        }
+        starts[segments] = totalFrames;
+
+        SpreadSpectrumEngine.Detection[][] detections = new SpreadSpectrumEngine.Detection[segments][channels];
+        Counter done = new Counter(progress);
+        try {
+            pool.invoke(new CellTask(wav, format, starts, detections, done, 0, segments * channels));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        return new Report(starts, detections, expectedPayload, wav.getSampleRate());
+    }
+
+    // Detects cells [from, to), numbered segment by segment
+    private final class CellTask extends RecursiveAction {
+        private final WavFile wav;
+        private final SampleFormat format;
+        private final long[] starts;
+        private final SpreadSpectrumEngine.Detection[][] detections;
+        private final Counter done;
+        private final int from;
+        private final int to;
+
+        CellTask(WavFile wav, SampleFormat format, long[] starts, SpreadSpectrumEngine.Detection[][] detections,
+                 Counter done, int from, int to) {
+            this.wav = wav;
+            this.format = format;
+            this.starts = starts;
+            this.detections = detections;
+            this.done = done;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CellTask(wav, format, starts, detections, done, from, middle),
+                        new CellTask(wav, format, starts, detections, done, middle, to));
+                return;
+            }
+
+            int channels = format.getChannels();
+            int segment = from / channels;
+            int channel = from % channels;
+            long offset = starts[segment] * format.getBlockAlign();
+            long length = (starts[segment + 1] - starts[segment]) * format.getBlockAlign();
+            try (ReadableByteChannel in = wav.dataChannel(offset, length)) {
+                detections[segment][channel] = engine.detect(in, length, format, wav.getSampleRate(), channel,
+                        _ -> { });
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            done.increment();
+        }
+    }
+
+    // Reports cells done in order, whichever thread finishes one
+    private static final class Counter {
+        private final IntConsumer progress;
+        private int count;
+
+        Counter(IntConsumer progress) {
+            this.progress = progress;
+        }
+
+        synchronized void increment() {
+            progress.accept(++count);
+        }
+    }
+
+    // Results by segment and channel
+    public static final class Report {
+        private final long[] starts;
+        private final SpreadSpectrumEngine.Detection[][] detections;
+        private final String expectedPayload;
+        private final int sampleRate;
+
+        Report(long[] starts, SpreadSpectrumEngine.Detection[][] detections, String expectedPayload,
+               int sampleRate) {
+            this.starts = starts;
+            this.detections = detections;
+            this.expectedPayload = expectedPayload;
+            this.sampleRate = sampleRate;
+        }
+
+        public int getSegments() {
+            return detections.length;
+        }
+
+        public int getChannels() {
+            return detections[0].length;
+        }
+
+        public long getStartFrame(int segment) {
+            return starts[segment];
+        }
+
+        public long getFrames(int segment) {
+            return starts[segment + 1] - starts[segment];
+        }
+
+        public double getStartSeconds(int segment) {
+            return (double) starts[segment] / sampleRate;
+        }
+
+        public double getEndSeconds(int segment) {
+            return (double) starts[segment + 1] / sampleRate;
+        }
+
+        public SpreadSpectrumEngine.Detection getDetection(int segment, int channel) {
+            return detections[segment][channel];
+        }
+
+        public boolean isIntact(int segment, int channel) {
+            SpreadSpectrumEngine.Detection detection = detections[segment][channel];
+            return detection.isDetected()
+                    && (expectedPayload == null || expectedPayload.equals(detection.getPayload()));
+        }
+
+        public boolean isSegmentIntact(int segment) {
+            for (int c = 0; c < getChannels(); c++) {
+                if (!isIntact(segment, c)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public boolean isIntact() {
+            for (int s = 0; s < getSegments(); s++) {
+                if (!isSegmentIntact(s)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
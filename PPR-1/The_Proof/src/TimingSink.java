@@ -0,0 +1,76 @@
+import java.nio.ByteBuffer;
+
+// AudioSink that stands in for a sound card: it discards the samples but keeps
+// the clock a line would. Each block is due when the one before it has finished
+// playing at sampleRate; one that arrives after that is an underrun, the gap a
+// listener would hear. With no device to block on, a producer runs as fast as it
+// can, so the elapsed time gives its throughput in real-time multiples.
+public final class TimingSink implements AudioSink {
+
+    private final int sampleRate;
+    private final int blockAlign;
+
+    private long firstWrite;
+    private long deadline;
+    private long lastWrite;
+    private long blocks;
+    private long bytes;
+    private int underruns;
+    private long maxLateNanos;
+
+    public TimingSink(int sampleRate, int blockAlign) {
+        this.sampleRate = sampleRate;
+        this.blockAlign = blockAlign;
+    }
+
+    @Override
+    public void write(ByteBuffer block) {
+        long now = System.nanoTime();
+        int length = block.remaining();
+        block.position(block.limit());
+
+        if (blocks == 0) {
+            firstWrite = now;
+            deadline = now;
+        } else if (now > deadline) {
+            underruns++;
+            maxLateNanos = Math.max(maxLateNanos, now - deadline);
+            deadline = now;
+        }
+        deadline += length / blockAlign * 1_000_000_000L / sampleRate;
+        lastWrite = now;
+        blocks++;
+        bytes += length;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public long getBlocks() {
+        return blocks;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    // Blocks that came later than the audio before them ran out
+    public int getUnderruns() {
+        return underruns;
+    }
+
+    public long getMaxLateNanos() {
+        return maxLateNanos;
+    }
+
+    // Seconds of audio received
+    public double getAudioSeconds() {
+        return (double) (bytes / blockAlign) / sampleRate;
+    }
+
+    // From the first block to the last
+    public double getElapsedSeconds() {
+        return (lastWrite - firstWrite) / 1e9;
+    }
+}
@@ -0,0 +1,35 @@
+// Receiver for per-pixel / per-sample trace events from the watermarking engines.
+// An event is a handful of ints, so nothing is formatted while the engine runs;
+// a front end turns the events it kept into log lines afterwards, and engines
+// skip the call altogether when the sink is NONE.
+//
+//   kind     - EMBED or EXTRACT
+//   index    - character index in the embedded string
+//   position - hop position before wrapping
+//   location - pixel index, or byte offset of an audio sample frame
+//   value    - character written or read
+//   before   - pixel / sample value before the write (same as after on extract)
+//   after    - pixel / sample value after the write
+public interface TraceSink {
+
+    int EMBED = 0;
+    int EXTRACT = 1;
+
+    // Tracing off: engines check isEnabled() once and never call event()
+    TraceSink NONE = new TraceSink() {
+        @Override
+        public void event(int kind, int index, int position, int location, int value, int before, int after) {
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    void event(int kind, int index, int position, int location, int value, int before, int after);
+
+    default boolean isEnabled() {
+        return true;
+    }
+}
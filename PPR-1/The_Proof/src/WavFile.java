@@ -0,0 +1,583 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+// A WAV file opened by walking its RIFF chunk headers instead of reading it
+// into memory. Each chunk is skipped by its declared size (plus the pad byte
+// after odd sizes), so opening costs O(chunks) however long the recording is.
+// Understands PCM and IEEE float "fmt " chunks, WAVE_FORMAT_EXTENSIBLE (the
+// sub-format, valid bits and channel mask), "fact" and LIST/INFO chunks, and
+// RF64/BW64 files larger than 4 GB whose real sizes live in the "ds64" chunk.
+//
+// The samples are only touched through samples(), a memory-mapped
+// little-endian view of the "data" chunk, and written back by streaming the
+// file with a patched range of samples (writeWithSamples) or with the whole
+// chunk rewritten on the fly (writeWithData).
+public final class WavFile implements Closeable {
+
+    public static final int WAVE_FORMAT_PCM = 0x0001;
+    public static final int WAVE_FORMAT_IEEE_FLOAT = 0x0003;
+    public static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private static final int CHUNK_HEADER_SIZE = 8;
+
+    // RF64 writes this in the 32-bit size fields and keeps the real size in ds64
+    private static final long RF64_SIZE_MARKER = 0xFFFFFFFFL;
+
+    // LIST chunks bigger than this are listed but not parsed
+    private static final int MAX_LIST_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final boolean rf64;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final Map<String, String> info = new LinkedHashMap<>();
+
+    private Chunk format;
+    private Chunk data;
+    private int formatTag;
+    private boolean extensible;
+    private int channels;
+    private int sampleRate;
+    private int blockAlign;
+    private int bitsPerSample;
+    private int validBitsPerSample;
+    private int channelMask;
+    private long factSampleLength = -1;
+
+    private WavFile(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        this.channel = channel;
+
+        ChunkWalker walker = new ChunkWalker(channel);
+        this.rf64 = walker.rf64;
+        while (walker.hasNext()) {
+            Chunk chunk = walker.next();
+            chunks.add(chunk);
+            switch (chunk.getId()) {
+                case "fmt " -> readFormat(chunk);
+                case "fact" -> readFact(chunk, walker);
+                case "LIST" -> readList(chunk);
+                case "data" -> {
+                    if (data == null) {
+                        data = chunk;
+                    }
+                }
+                default -> {
+                    // bext, cue, JUNK, ... are listed and skipped
+                }
+            }
+        }
+
+        if (format == null) {
+            throw new IOException("Invalid WAV file: no fmt chunk");
+        }
+        if (data == null) {
+            throw new IOException("Invalid WAV file: no data chunk");
+        }
+        if (channels <= 0 || blockAlign <= 0) {
+            throw new IOException("Invalid WAV format: " + channels + " channels, block align " + blockAlign);
+        }
+    }
+
+    public static WavFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new WavFile(path, channel);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    // The chunks of a RIFF, RF64 or BW64 WAVE file in file order, without reading their bodies
+    public static Iterator<Chunk> walk(FileChannel channel) throws IOException {
+        return new ChunkWalker(channel);
+    }
+
+    // Read-only little-endian view of the whole data chunk
+    public ByteBuffer samples() throws IOException {
+        if (data.getSize() > Integer.MAX_VALUE) {
+            throw new IOException("Data chunk of " + data.getSize()
+                    + " bytes is too large to map at once; map it in windows with samples(from, length)");
+        }
+        return samples(0, (int) data.getSize());
+    }
+
+    // Read-only little-endian view of length bytes of the data chunk, starting from byte from
+    public ByteBuffer samples(long from, int length) throws IOException {
+        if (from < 0 || length < 0 || from + length > data.getSize()) {
+            throw new IndexOutOfBoundsException("Window " + from + "+" + length + " outside data chunk of "
+                    + data.getSize() + " bytes");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, data.getOffset() + from, length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Copy the file to target with the data chunk bytes from 'from' onwards replaced by samples
+    public void copyWithSamples(Path target, long from, ByteBuffer samples) throws IOException {
+        checkPatch(from, samples);
+        if (Files.exists(target) && Files.isSameFile(path, target)) {
+            // Truncating the target would destroy the source; only the samples need writing
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                ByteBuffer source = samples.duplicate();
+                long position = data.getOffset() + from;
+                while (source.hasRemaining()) {
+                    position += out.write(source, position);
+                }
+            }
+            return;
+        }
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeWithSamples(out, from, samples);
+        }
+    }
+
+    // Stream the file to out with the data chunk bytes from 'from' onwards replaced by samples.
+    // Everything around them is moved with transferTo, so the kernel copies it without passing
+    // through the heap, and memory use does not grow with the file.
+    public void writeWithSamples(WritableByteChannel out, long from, ByteBuffer samples) throws IOException {
+        checkPatch(from, samples);
+        long patchStart = data.getOffset() + from;
+        long patchEnd = patchStart + samples.remaining();
+
+        transfer(0, patchStart, out);
+        ByteBuffer source = samples.duplicate();
+        while (source.hasRemaining()) {
+            out.write(source);
+        }
+        transfer(patchEnd, channel.size() - patchEnd, out);
+    }
+
+    // Copy the file to target with the data chunk rewritten by body; see writeWithData
+    public void copyWithData(Path target, DataRewriter body) throws IOException {
+        if (Files.exists(target) && Files.isSameFile(path, target)) {
+            throw new IOException("Cannot rewrite " + path + " while streaming from it; choose another file");
+        }
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeWithData(out, body);
+        }
+    }
+
+    // Stream the file to out with the whole data chunk replaced by what body writes, which must
+    // be exactly getDataSize() bytes. body reads the original samples from a channel over the
+    // data chunk; the chunks around it are moved with transferTo.
+    public void writeWithData(WritableByteChannel out, DataRewriter body) throws IOException {
+        long dataEnd = data.getOffset() + data.getSize();
+        transfer(0, data.getOffset(), out);
+
+        CountingChannel counted = new CountingChannel(out);
+        body.rewrite(dataChannel(), counted);
+        if (counted.count != data.getSize()) {
+            throw new IOException("Data chunk rewritten with " + counted.count + " bytes instead of "
+                    + data.getSize());
+        }
+        transfer(dataEnd, channel.size() - dataEnd, out);
+    }
+
+    // Sequential read-only channel over the data chunk, with its own position; closing it
+    // leaves the file open
+    public ReadableByteChannel dataChannel() {
+        return new DataChannel(data.getOffset(), data.getOffset() + data.getSize());
+    }
+
+    // Channel over length bytes of the data chunk starting at from. Reads are positional, so
+    // several threads may each read their own channel.
+    public ReadableByteChannel dataChannel(long from, long length) {
+        if (from < 0 || length < 0 || from + length > data.getSize()) {
+            throw new IndexOutOfBoundsException("Range " + from + "+" + length + " is outside the data chunk");
+        }
+        return new DataChannel(data.getOffset() + from, data.getOffset() + from + length);
+    }
+
+    private void checkPatch(long from, ByteBuffer samples) {
+        if (from < 0 || from + samples.remaining() > data.getSize()) {
+            throw new IndexOutOfBoundsException("Samples do not fit in the data chunk at " + from);
+        }
+    }
+
+    private void transfer(long position, long count, WritableByteChannel out) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long moved = channel.transferTo(position, end - position, out);
+            if (moved <= 0) {
+                throw new IOException("Unexpected end of " + path + " at byte " + position);
+            }
+            position += moved;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean isRf64() {
+        return rf64;
+    }
+
+    public List<Chunk> getChunks() {
+        return Collections.unmodifiableList(chunks);
+    }
+
+    // PCM or IEEE float; for WAVE_FORMAT_EXTENSIBLE files this is the sub-format
+    public int getFormatTag() {
+        return formatTag;
+    }
+
+    public boolean isExtensible() {
+        return extensible;
+    }
+
+    public boolean isFloat() {
+        return formatTag == WAVE_FORMAT_IEEE_FLOAT;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    // Bytes per frame (one sample for every channel)
+    public int getBlockAlign() {
+        return blockAlign;
+    }
+
+    // Container size of one sample
+    public int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    // Bits actually used, e.g. 20 in a 24-bit container; same as getBitsPerSample() unless EXTENSIBLE says otherwise
+    public int getValidBitsPerSample() {
+        return validBitsPerSample;
+    }
+
+    // Speaker positions from WAVE_FORMAT_EXTENSIBLE, 0 otherwise
+    public int getChannelMask() {
+        return channelMask;
+    }
+
+    // Frames per channel from the fact chunk, or -1 if the file has none
+    public long getFactSampleLength() {
+        return factSampleLength;
+    }
+
+    // LIST/INFO tags such as INAM (title) and IART (artist)
+    public Map<String, String> getInfo() {
+        return Collections.unmodifiableMap(info);
+    }
+
+    // Absolute file offset of the first sample byte
+    public long getDataOffset() {
+        return data.getOffset();
+    }
+
+    public long getDataSize() {
+        return data.getSize();
+    }
+
+    public long getFrameCount() {
+        return data.getSize() / blockAlign;
+    }
+
+    public long getFileSize() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readFormat(Chunk chunk) throws IOException {
+        if (chunk.getSize() < 16) {
+            throw new IOException("Invalid WAV file: fmt chunk of " + chunk.getSize() + " bytes");
+        }
+        int size = (int) Math.min(chunk.getSize(), 40);
+        ByteBuffer fmt = read(channel, chunk.getOffset(), size);
+
+        format = chunk;
+        formatTag = fmt.getShort(0) & 0xFFFF;
+        channels = fmt.getShort(2) & 0xFFFF;
+        sampleRate = fmt.getInt(4);
+        blockAlign = fmt.getShort(12) & 0xFFFF;
+        bitsPerSample = fmt.getShort(14) & 0xFFFF;
+        validBitsPerSample = bitsPerSample;
+
+        if (formatTag == WAVE_FORMAT_EXTENSIBLE) {
+            if (size < 40) {
+                throw new IOException("Invalid WAV file: WAVE_FORMAT_EXTENSIBLE fmt chunk of " + size + " bytes");
+            }
+            extensible = true;
+            int validBits = fmt.getShort(18) & 0xFFFF;
+            if (validBits != 0) {
+                validBitsPerSample = validBits;
+            }
+            channelMask = fmt.getInt(20);
+            // The sub-format GUID starts with the ordinary format code
+            formatTag = fmt.getShort(24) & 0xFFFF;
+        }
+    }
+
+    private void readFact(Chunk chunk, ChunkWalker walker) throws IOException {
+        if (chunk.getSize() < 4) {
+            return;
+        }
+        long length = read(channel, chunk.getOffset(), 4).getInt(0) & 0xFFFFFFFFL;
+        factSampleLength = rf64 && length == RF64_SIZE_MARKER ? walker.ds64SampleCount : length;
+    }
+
+    private void readList(Chunk chunk) throws IOException {
+        if (chunk.getSize() < 4 || chunk.getSize() > MAX_LIST_SIZE) {
+            return;
+        }
+        ByteBuffer list = read(channel, chunk.getOffset(), (int) chunk.getSize());
+        if (!"INFO".equals(fourCC(list, 0))) {
+            return;
+        }
+
+        int position = 4;
+        while (position + CHUNK_HEADER_SIZE <= list.limit()) {
+            String id = fourCC(list, position);
+            int size = list.getInt(position + 4);
+            int body = position + CHUNK_HEADER_SIZE;
+            if (size < 0 || body + size > list.limit()) {
+                break;
+            }
+            // Values are NUL-terminated text
+            String value = new String(list.array(), body, size, StandardCharsets.ISO_8859_1);
+            int nul = value.indexOf('\0');
+            info.put(id, (nul >= 0 ? value.substring(0, nul) : value).trim());
+            position = body + size + (size & 1);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Truncated WAV file: " + length + " bytes at offset " + position
+                        + " run past the end");
+            }
+        }
+        return buf;
+    }
+
+    private static String fourCC(ByteBuffer buf, int index) {
+        char[] id = new char[4];
+        for (int i = 0; i < 4; i++) {
+            id[i] = (char) (buf.get(index + i) & 0xFF);
+        }
+        return new String(id);
+    }
+
+    // Writes a new data chunk while reading the old one, for engines that transform the whole signal
+    public interface DataRewriter {
+        void rewrite(ReadableByteChannel samples, WritableByteChannel out) throws IOException;
+    }
+
+    private final class DataChannel implements ReadableByteChannel {
+        private final long end;
+        private long position;
+        private boolean open = true;
+
+        DataChannel(long start, long end) {
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            if (position >= end) {
+                return -1;
+            }
+            ByteBuffer window = dst.slice(dst.position(), (int) Math.min(dst.remaining(), end - position));
+            int n = channel.read(window, position);
+            if (n < 0) {
+                return -1;
+            }
+            dst.position(dst.position() + n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open && channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+
+    private static final class CountingChannel implements WritableByteChannel {
+        private final WritableByteChannel out;
+        private long count;
+
+        CountingChannel(WritableByteChannel out) {
+            this.out = out;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int n = out.write(src);
+            count += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return out.isOpen();
+        }
+
+        // The rest of the file still has to go to out
+        @Override
+        public void close() {
+        }
+    }
+
+    // One chunk: its four-character id, and the offset and size of its body (the header excluded)
+    public static final class Chunk {
+        private final String id;
+        private final long offset;
+        private final long size;
+
+        public Chunk(String id, long offset, long size) {
+            this.id = id;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "'" + id + "' (" + size + " bytes at " + offset + ")";
+        }
+    }
+
+    // Reads 8-byte chunk headers one after the other. The RIFF size bounds the
+    // walk unless the file is shorter (truncated or still being recorded), and a
+    // chunk running past the end is cut to what is actually there.
+    private static final class ChunkWalker implements Iterator<Chunk> {
+        private final FileChannel channel;
+        private final boolean rf64;
+        private final long end;
+        private long position = 12;
+
+        // Sizes from the ds64 chunk of an RF64 file
+        private long ds64DataSize = -1;
+        private long ds64SampleCount = -1;
+        private final Map<String, Long> ds64Table = new HashMap<>();
+
+        ChunkWalker(FileChannel channel) throws IOException {
+            this.channel = channel;
+
+            ByteBuffer header = read(channel, 0, 12);
+            String riff = fourCC(header, 0);
+            if (!riff.equals("RIFF") && !riff.equals("RF64") && !riff.equals("BW64")) {
+                throw new IOException("Not a WAV file: missing RIFF header");
+            }
+            if (!fourCC(header, 8).equals("WAVE")) {
+                throw new IOException("Not a WAV file: RIFF form type is '" + fourCC(header, 8) + "'");
+            }
+            this.rf64 = !riff.equals("RIFF");
+
+            long riffSize = header.getInt(4) & 0xFFFFFFFFL;
+            if (rf64) {
+                riffSize = readDs64();
+            }
+            this.end = Math.min(channel.size(), CHUNK_HEADER_SIZE + riffSize);
+        }
+
+        // ds64 must be the first chunk: RIFF size, data size, sample count, then a table of other sizes
+        private long readDs64() throws IOException {
+            ByteBuffer ds64 = read(channel, position, CHUNK_HEADER_SIZE + 28);
+            if (!fourCC(ds64, 0).equals("ds64")) {
+                throw new IOException("Invalid RF64 file: first chunk is '" + fourCC(ds64, 0) + "', not 'ds64'");
+            }
+            long chunkSize = ds64.getInt(4) & 0xFFFFFFFFL;
+            long riffSize = ds64.getLong(8);
+            ds64DataSize = ds64.getLong(16);
+            ds64SampleCount = ds64.getLong(24);
+
+            int tableLength = ds64.getInt(32);
+            for (int i = 0; i < tableLength && 28 + 12L * (i + 1) <= chunkSize; i++) {
+                ByteBuffer entry = read(channel, position + CHUNK_HEADER_SIZE + 28 + 12L * i, 12);
+                ds64Table.put(fourCC(entry, 0), entry.getLong(4));
+            }
+            return riffSize;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position + CHUNK_HEADER_SIZE <= end;
+        }
+
+        @Override
+        public Chunk next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                ByteBuffer header = read(channel, position, CHUNK_HEADER_SIZE);
+                String id = fourCC(header, 0);
+                long size = header.getInt(4) & 0xFFFFFFFFL;
+                long body = position + CHUNK_HEADER_SIZE;
+
+                if (rf64 && size == RF64_SIZE_MARKER) {
+                    Long tableSize = ds64Table.get(id);
+                    if (id.equals("data")) {
+                        size = ds64DataSize;
+                    } else if (tableSize != null) {
+                        size = tableSize;
+                    }
+                }
+                size = Math.min(size, end - body);
+
+                position = body + size + (size & 1);
+                return new Chunk(id, body, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+// The DigitalWatermarkingGUI scheme without any UI. The embedded string is
+//   "@@" + watermark + "#@"
+// one character per pixel in the 3-3-2 LSBs, at pixels base, base + step,
+// base + 2 * step, ... with base = step = XOR of the password's SHA-256 bytes
+// (KeySchedule.forSequentialXor).
+//
+// Nothing is formatted or logged; pass a TraceSink to record every pixel touched.
+public final class XorStepEngine {
+
+    public static final String START_MARKER = "@@";
+    public static final String END_MARKER = "#@";
+
+    // Extraction stops after this many characters if no end marker turns up
+    public static final int MAX_EXTRACT_CHARS = 61;
+
+    private final TraceSink trace;
+    private final boolean tracing;
+
+    public XorStepEngine() {
+        this(TraceSink.NONE);
+    }
+
+    public XorStepEngine(TraceSink trace) {
+        this.trace = trace;
+        this.tracing = trace.isEnabled();
+    }
+
+    public void embed(PixelRaster raster, String watermark, KeySchedule key) {
+        String delimited = START_MARKER + watermark + END_MARKER;
+        if (delimited.length() > hopPositions(raster.getTotalPixels(), key)) {
+            throw new RuntimeException("Watermark too long for image.");
+        }
+
+        int step = key.getStep();
+        int position = key.getBaseOffset();
+        for (int i = 0; i < delimited.length(); i++) {
+            char c = delimited.charAt(i);
+
+            int oldRgb = raster.getRGB(position);
+            int newRgb = LsbKernel.embed(oldRgb, c & 0xFF);
+            raster.setRGB(position, newRgb);
+
+            if (tracing) {
+                trace.event(TraceSink.EMBED, i, position, position, c, oldRgb, newRgb);
+            }
+            position += step;
+        }
+    }
+
+    // Raw characters read along the hop path until both markers have been seen,
+    // or MAX_EXTRACT_CHARS of them
+    public String extract(PixelRaster raster, KeySchedule key) {
+        int totalPixels = raster.getTotalPixels();
+        int step = key.getStep();
+
+        char[] text = new char[MAX_EXTRACT_CHARS];
+        int length = 0;
+        int position = key.getBaseOffset();
+        boolean foundStart = false;
+        boolean foundEnd = false;
+
+        while (length < MAX_EXTRACT_CHARS) {
+            int rgb = raster.getRGB(position);
+            char c = (char) LsbKernel.extract(rgb);
+
+            if (tracing) {
+                trace.event(TraceSink.EXTRACT, length, position, position, c, rgb, rgb);
+            }
+
+            // The markers may appear anywhere in what has been read so far
+            if (length > 0 && c == '@') {
+                foundStart |= text[length - 1] == '@';
+                foundEnd |= text[length - 1] == '#';
+            }
+            text[length++] = c;
+
+            if (foundStart && foundEnd) {
+                break;
+            }
+            position = (position + step) % totalPixels;
+        }
+
+        return new String(text, 0, length);
+    }
+
+    // Longest watermark (in characters) that fits in an image with this many pixels
+    public static int capacity(int totalPixels, KeySchedule key) {
+        return Math.max(0, hopPositions(totalPixels, key) - START_MARKER.length() - END_MARKER.length());
+    }
+
+    // Pixels base, base + step, ... that lie inside the image
+    private static int hopPositions(int totalPixels, KeySchedule key) {
+        if (key.getBaseOffset() >= totalPixels) {
+            return 0;
+        }
+        return (totalPixels - 1 - key.getBaseOffset()) / key.getStep() + 1;
+    }
+}